@@ -0,0 +1,26 @@
+package org.jenkinsci.plugins.codescene.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks in throughput mode with the GC profiler, so that every result comes with its allocation rate
+ * (see the <code>gc.alloc.rate.norm</code> lines, in bytes per operation).
+ * Takes the usual JMH command line options, e.g. a regular expression to run only some of the benchmarks.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .mode(Mode.Throughput)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
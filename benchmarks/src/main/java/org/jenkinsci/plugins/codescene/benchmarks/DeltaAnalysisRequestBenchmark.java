@@ -0,0 +1,36 @@
+package org.jenkinsci.plugins.codescene.benchmarks;
+
+import org.jenkinsci.plugins.codescene.Domain.Commits;
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisRequest;
+import org.jenkinsci.plugins.codescene.Domain.Repository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the request payload and serializing it, as done for every delta analysis request.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DeltaAnalysisRequestBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int commitCount;
+
+    private Commits commits;
+    private Repository repository;
+
+    @Setup
+    public void setUp() {
+        commits = Payloads.commits(commitCount);
+        repository = new Repository("codescene-ui");
+    }
+
+    @Benchmark
+    public String serialize() {
+        return new DeltaAnalysisRequest(commits, repository, 80).asJson().toString();
+    }
+}
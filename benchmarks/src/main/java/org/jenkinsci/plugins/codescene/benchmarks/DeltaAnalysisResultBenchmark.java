@@ -0,0 +1,79 @@
+package org.jenkinsci.plugins.codescene.benchmarks;
+
+import org.jenkinsci.plugins.codescene.Domain.Commits;
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisResult;
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisResultParser;
+import org.openjdk.jmh.annotations.*;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning a delta analysis response into a {@link DeltaAnalysisResult}, for responses of growing size.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DeltaAnalysisResultBenchmark {
+
+    public enum Warnings {
+        SMALL(2, 3), MEDIUM(10, 50), VERY_LARGE(50, 2000);
+
+        final int categories;
+        final int detailsPerCategory;
+
+        Warnings(int categories, int detailsPerCategory) {
+            this.categories = categories;
+            this.detailsPerCategory = detailsPerCategory;
+        }
+    }
+
+    @Param({"SMALL", "MEDIUM", "VERY_LARGE"})
+    public Warnings warnings;
+
+    private Commits commits;
+    private byte[] response;
+    private JsonObject parsedResponse;
+
+    @Setup
+    public void setUp() {
+        commits = Payloads.commits(1);
+        response = Payloads.response(warnings.categories, warnings.detailsPerCategory);
+        parsedResponse = readObject(response);
+    }
+
+    /**
+     * The full trip from response bytes to result through the object model, as the plugin originally parsed it.
+     */
+    @Benchmark
+    public DeltaAnalysisResult parseWithObjectModel() {
+        return new DeltaAnalysisResult(commits, readObject(response));
+    }
+
+    /**
+     * Only the conversion of an already parsed response, which is where the warnings are copied.
+     */
+    @Benchmark
+    public DeltaAnalysisResult warningsFromObjectModel() {
+        return new DeltaAnalysisResult(commits, parsedResponse);
+    }
+
+    /**
+     * The streaming parser the plugin uses for responses.
+     */
+    @Benchmark
+    public DeltaAnalysisResult parseStreaming() {
+        return DeltaAnalysisResultParser.parse(commits, new ByteArrayInputStream(response));
+    }
+
+    private static JsonObject readObject(byte[] json) {
+        try (JsonReader reader = Json.createReader(new ByteArrayInputStream(json))) {
+            return reader.readObject();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.codescene.benchmarks;
+
+import org.jenkinsci.plugins.codescene.Domain.CodeSceneUser;
+import org.jenkinsci.plugins.codescene.Domain.Commit;
+import org.jenkinsci.plugins.codescene.Domain.Commits;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The small per-request operations on the domain classes.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DomainBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int commitCount;
+
+    private Commits commits;
+    private CodeSceneUser user;
+
+    @Setup
+    public void setUp() {
+        commits = Payloads.commits(commitCount);
+        user = new CodeSceneUser("codescene-bot", "a-reasonably-long-api-password");
+    }
+
+    @Benchmark
+    public List<Commit> commitsValue() {
+        return commits.value();
+    }
+
+    @Benchmark
+    public String userAsBase64Encoded() {
+        return user.asBase64Encoded();
+    }
+}
@@ -0,0 +1,48 @@
+package org.jenkinsci.plugins.codescene.benchmarks;
+
+import org.jenkinsci.plugins.codescene.Domain.Commit;
+import org.jenkinsci.plugins.codescene.Domain.Commits;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic, but realistically shaped, delta analysis data.
+ */
+final class Payloads {
+    static final Charset UTF8 = Charset.forName("UTF8");
+
+    private Payloads() {
+    }
+
+    static Commits commits(int count) {
+        final List<Commit> commits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            commits.add(new Commit(String.format("%040x", 0x9822ac0c7e5aL + i)));
+        }
+        return new Commits(commits);
+    }
+
+    /**
+     * A delta analysis response with the given number of warning categories, each with the given number of details.
+     */
+    static byte[] response(int categories, int detailsPerCategory) {
+        final StringBuilder json = new StringBuilder("{\"version\":\"1\",\"view\":\"/projects/2/delta/42\",\"result\":{\"risk\":7,\"warnings\":[");
+        for (int c = 0; c < categories; c++) {
+            if (c > 0) {
+                json.append(',');
+            }
+            json.append("{\"category\":\"Modifies Hotspot ").append(c).append("\",\"details\":[");
+            for (int d = 0; d < detailsPerCategory; d++) {
+                if (d > 0) {
+                    json.append(',');
+                }
+                json.append("\"src/main/clojure/codescene/analysis/module_").append(c).append("/file_").append(d).append(".clj\"");
+            }
+            json.append("]}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(UTF8);
+    }
+}
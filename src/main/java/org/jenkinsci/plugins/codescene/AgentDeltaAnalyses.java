@@ -0,0 +1,137 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.model.TaskListener;
+import hudson.remoting.ChannelClosedException;
+import hudson.remoting.VirtualChannel;
+import jenkins.security.MasterToSlaveCallable;
+import org.jenkinsci.plugins.codescene.Domain.Commits;
+import org.jenkinsci.plugins.codescene.Domain.Configuration;
+import org.jenkinsci.plugins.codescene.Domain.ConnectionPoolSettings;
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisResult;
+import org.jenkinsci.plugins.codescene.Domain.RequestPolicy;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends delta analysis requests from the build agent instead of the controller. The HTTP connections, the responses
+ * and their parsing then take resources of the agent; only the parsed results travel back.
+ * <p>
+ * The agent keeps its own pool of connections with the same settings as the controller. The {@link CircuitBreaker}
+ * and the {@link RequestThrottle} of the server stay on the controller, so each commit set goes to the agent in a call
+ * of its own: the throttle lets it through, and the breaker learns from the call as a whole. Unlike on the controller,
+ * the slot at the throttle is then held until the call returns, for the polls of an analysis in the background too.
+ */
+final class AgentDeltaAnalyses {
+
+    private AgentDeltaAnalyses() {
+    }
+
+    /**
+     * Runs the analysis of the commit set on the agent, once the throttle of the server lets it through. Like
+     * {@link DeltaAnalysis#runOnUnless}, it sends no request once {@code stop} is set.
+     *
+     * @return the result, or null if the analysis was stopped before it got one
+     */
+    static DeltaAnalysisResult runOnUnless(VirtualChannel agent, Configuration config, Commits commits, AtomicBoolean stop,
+                                           RequestPolicy policy, ConnectionPoolSettings pool, CircuitBreaker breaker,
+                                           RequestThrottle throttle, String job, TaskListener listener) throws IOException {
+        if (stop.get()) {
+            return null;
+        }
+        DeltaAnalysis.acquire(throttle, job, policy.remainingMillis(System.currentTimeMillis()), listener);
+        try {
+            if (stop.get()) {
+                // stopped while waiting for the throttle
+                return null;
+            }
+            return guardedRunOn(agent, config, commits, policy, pool, breaker, listener);
+        } finally {
+            throttle.release();
+        }
+    }
+
+    private static DeltaAnalysisResult guardedRunOn(VirtualChannel agent, Configuration config, Commits commits, RequestPolicy policy,
+                                                    ConnectionPoolSettings pool, CircuitBreaker breaker,
+                                                    TaskListener listener) throws IOException {
+        if (!breaker.allowRequest()) {
+            DeltaAnalysisMetrics.get().requestSkipped();
+            throw CodeSceneUnavailableException.of(breaker);
+        }
+
+        try {
+            final DeltaAnalysisResult result = agent.call(new Analysis(config.withoutPassword(), commits, policy,
+                    policy.remainingMillis(System.currentTimeMillis()), pool, breaker.getFailureThreshold(),
+                    breaker.getOpenMillis(), listener));
+            breaker.recordSuccess();
+            return result;
+        } catch (OutOfTimeException e) {
+            // the build ran out of time, which says nothing about CodeScene either
+            breaker.recordAborted();
+            throw e;
+        } catch (PollFailedException e) {
+            breaker.recordFailure(e.getMessage());
+            throw e;
+        } catch (DeltaAnalysisException e) {
+            if (e.isRetryable()) {
+                breaker.recordFailure("HTTP " + e.getStatusCode());
+            } else {
+                breaker.recordSuccess();
+            }
+            throw e;
+        } catch (ChannelClosedException e) {
+            // the agent went away, which says nothing about CodeScene
+            breaker.recordAborted();
+            throw e;
+        } catch (IOException e) {
+            breaker.recordFailure(e.toString());
+            throw e;
+        } catch (InterruptedException e) {
+            breaker.recordAborted();
+            throw (InterruptedIOException) new InterruptedIOException("Interrupted while waiting for the delta analysis on the agent").initCause(e);
+        } catch (RuntimeException | Error e) {
+            breaker.recordAborted();
+            throw e;
+        }
+    }
+
+    /**
+     * The user goes to the agent without the password, and the deadline as the time left, since the clock of the
+     * agent may differ from that of the controller.
+     */
+    private static final class Analysis extends MasterToSlaveCallable<DeltaAnalysisResult, IOException> {
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration config;
+        private final Commits commits;
+        private final RequestPolicy policy;
+        private final long remainingMillis;
+        private final ConnectionPoolSettings pool;
+        private final int failureThreshold;
+        private final long openMillis;
+        private final TaskListener listener;
+
+        Analysis(Configuration config, Commits commits, RequestPolicy policy, long remainingMillis,
+                 ConnectionPoolSettings pool, int failureThreshold, long openMillis, TaskListener listener) {
+            this.config = config;
+            this.commits = commits;
+            this.policy = policy;
+            this.remainingMillis = remainingMillis;
+            this.pool = pool;
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+            this.listener = listener;
+        }
+
+        @Override
+        public DeltaAnalysisResult call() throws IOException {
+            // the breaker on the controller has let this call through, this one only sees its retries
+            final CircuitBreaker breaker = new CircuitBreaker(config.codeSceneUrl().toExternalForm(), failureThreshold, openMillis);
+            final RequestPolicy local = policy.withDeadline(System.currentTimeMillis() + remainingMillis);
+            try (CodeSceneHttpClient.Lease httpClient = CodeSceneHttpClient.lease(pool)) {
+                return new DeltaAnalysis(config, httpClient.client(), local, breaker, listener).runOn(commits);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.XmlFile;
+import hudson.model.Job;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The last commit analysed individually, per branch of a job.
+ * <p>
+ * A checkpoint moves forward whenever the analyses of a build complete, whether or not the build succeeds in the end.
+ * The next build then starts from there instead of the last successful build, so a series of builds failing for
+ * other reasons doesn't send the same commits to CodeScene again and again. When some of the new commits got no
+ * result, e.g. since the build stopped at the risk threshold or the commit limit left them out, the checkpoint stays.
+ * <p>
+ * Builds of the same branch may run at the same time and complete in any order. A build only moves the checkpoint
+ * on from the commit it started from, so an older build that completes last can't move it back.
+ */
+public class AnalysisCheckpoints {
+    private static final Logger LOGGER = Logger.getLogger(AnalysisCheckpoints.class.getName());
+
+    static final String FILE_NAME = "codescene-checkpoints.xml";
+
+    private static final ConcurrentMap<File, AnalysisCheckpoints> CHECKPOINTS = new ConcurrentHashMap<>();
+
+    private final XmlFile file;
+    private Map<String, String> commitsByBranch;
+
+    public AnalysisCheckpoints(XmlFile file) {
+        this.file = file;
+    }
+
+    static AnalysisCheckpoints of(Job<?, ?> job) {
+        final File file = new File(job.getRootDir(), FILE_NAME);
+        AnalysisCheckpoints checkpoints = CHECKPOINTS.get(file);
+        if (checkpoints == null) {
+            final AnalysisCheckpoints created = new AnalysisCheckpoints(new XmlFile(file));
+            checkpoints = CHECKPOINTS.putIfAbsent(file, created);
+            if (checkpoints == null) {
+                checkpoints = created;
+            }
+        }
+        return checkpoints;
+    }
+
+    /**
+     * @see CodeSceneItemListener
+     */
+    static void forgetFilesIn(File dir) {
+        CodeSceneItemListener.forgetFilesIn(CHECKPOINTS, dir);
+    }
+
+    static void forgetMissingDirectories() {
+        CodeSceneItemListener.forgetMissingDirectories(CHECKPOINTS);
+    }
+
+    /**
+     * @param branch the branch as in {@code GIT_BRANCH}, may be null
+     * @return the last commit analysed on the branch, or null if none was yet
+     */
+    public synchronized String get(String branch) {
+        ensureLoaded();
+        return commitsByBranch.get(keyOf(branch));
+    }
+
+    /**
+     * Records that the commits up to and including {@code commit} have been analysed, unless another build moved the
+     * checkpoint since {@code from}. It then stays where that build put it, and the next build may analyse some
+     * commits once more.
+     *
+     * @param from the checkpoint the build started from, as {@link #get} returned it
+     * @return false if the checkpoint was no longer {@code from}
+     */
+    public synchronized boolean advance(String branch, String from, String commit) {
+        ensureLoaded();
+        final String current = commitsByBranch.get(keyOf(branch));
+        if (current == null ? from != null : !current.equals(from)) {
+            return false;
+        }
+        if (commit == null || commit.equals(current)) {
+            return true;
+        }
+        commitsByBranch.put(keyOf(branch), commit);
+        try {
+            file.write(new TreeMap<>(commitsByBranch));
+        } catch (IOException e) {
+            // the next build analyses some commits once more, that's all
+            LOGGER.log(Level.WARNING, "Failed to save the CodeScene analysis checkpoints to " + file, e);
+        }
+        return true;
+    }
+
+    private static String keyOf(String branch) {
+        return branch == null ? "" : branch;
+    }
+
+    private void ensureLoaded() {
+        if (commitsByBranch != null) {
+            return;
+        }
+        commitsByBranch = new TreeMap<>();
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            final Map<String, String> persisted = (Map<String, String>) file.read();
+            commitsByBranch.putAll(persisted);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the CodeScene analysis checkpoints from " + file
+                    + ", starting from the last successful build", e);
+        }
+    }
+}
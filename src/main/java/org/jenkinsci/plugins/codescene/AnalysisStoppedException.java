@@ -0,0 +1,15 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.io.IOException;
+
+/**
+ * The build no longer needed the delta analysis by the time the {@link RequestThrottle} let it through, so it was
+ * never sent.
+ */
+class AnalysisStoppedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    AnalysisStoppedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Stops sending delta analyses to a CodeScene server that keeps failing.
+ * <p>
+ * The breaker starts {@link State#CLOSED} and lets every request through. After a number of consecutive failures it
+ * opens, and requests fail immediately instead of each waiting for its own timeout. Once the open period has passed,
+ * a single probe request is let through in the {@link State#HALF_OPEN} state: if it succeeds the breaker closes again,
+ * otherwise it stays open for another period.
+ */
+public class CircuitBreaker {
+    private static final int MAX_TRANSITIONS = 20;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String server;
+
+    private int failureThreshold;
+    private long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private String lastFailure;
+    private final Deque<Transition> transitions = new ArrayDeque<>();
+
+    public CircuitBreaker(String server, int failureThreshold, long openMillis) {
+        this.server = server;
+        configure(failureThreshold, openMillis);
+    }
+
+    public synchronized void configure(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis < 1) {
+            throw new IllegalArgumentException("The failure threshold and the open period of a circuit breaker have to be positive.");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return true if a request may be sent now, in which case its outcome has to be recorded
+     */
+    public synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now() - openedAt < openMillis) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN, "Sending a probe request after " + openMillis / 1000 + "s");
+                probeInFlight = true;
+                return true;
+            default:
+                // only the probe gets through until we know how it went
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED, "Request succeeded");
+        }
+    }
+
+    public synchronized void recordFailure(String reason) {
+        consecutiveFailures++;
+        lastFailure = reason;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN
+                || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            openedAt = now();
+            transitionTo(State.OPEN, reason);
+        } else if (state == State.OPEN) {
+            // a request that was in flight when we opened, start the period over
+            openedAt = now();
+        }
+    }
+
+    /**
+     * The request ended without telling us anything about the server, e.g. it was interrupted.
+     */
+    public synchronized void recordAborted() {
+        probeInFlight = false;
+    }
+
+    /**
+     * Closes the breaker right away, e.g. when an administrator knows that the server is back.
+     */
+    public synchronized void reset() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED, "Reset manually");
+        }
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public synchronized int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public synchronized long getOpenMillis() {
+        return openMillis;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return when the next probe request may be sent, or null unless the breaker is open
+     */
+    public synchronized Date getRetryAt() {
+        return state == State.OPEN ? new Date(openedAt + openMillis) : null;
+    }
+
+    /**
+     * @return the most recent state changes, newest first
+     */
+    public synchronized List<Transition> getTransitions() {
+        return Collections.unmodifiableList(new ArrayList<>(transitions));
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void transitionTo(State next, String reason) {
+        transitions.addFirst(new Transition(new Date(now()), state, next, reason));
+        if (transitions.size() > MAX_TRANSITIONS) {
+            transitions.removeLast();
+        }
+        state = next;
+    }
+
+    public static final class Transition {
+        private final Date at;
+        private final State from;
+        private final State to;
+        private final String reason;
+
+        Transition(Date at, State from, State to, String reason) {
+            this.at = at;
+            this.from = from;
+            this.to = to;
+            this.reason = reason;
+        }
+
+        public Date getAt() {
+            return new Date(at.getTime());
+        }
+
+        public State getFrom() {
+            return from;
+        }
+
+        public State getTo() {
+            return to;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
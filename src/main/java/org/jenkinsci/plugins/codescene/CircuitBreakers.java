@@ -0,0 +1,54 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link CircuitBreaker} per CodeScene delta analysis URL, shared by all jobs on this controller.
+ */
+final class CircuitBreakers {
+    private static final ConcurrentMap<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private CircuitBreakers() {
+    }
+
+    /**
+     * Returns the breaker for the URL, applying the current settings to it.
+     */
+    static CircuitBreaker forServer(URL codeSceneUrl, int failureThreshold, long openMillis) {
+        final String server = codeSceneUrl.toExternalForm();
+        CircuitBreaker breaker = BREAKERS.get(server);
+        if (breaker == null) {
+            final CircuitBreaker created = new CircuitBreaker(server, failureThreshold, openMillis);
+            breaker = BREAKERS.putIfAbsent(server, created);
+            if (breaker == null) {
+                return created;
+            }
+        }
+        breaker.configure(failureThreshold, openMillis);
+        return breaker;
+    }
+
+    static CircuitBreaker get(String server) {
+        return BREAKERS.get(server);
+    }
+
+    /**
+     * @return all breakers, sorted by server
+     */
+    static List<CircuitBreaker> all() {
+        final List<CircuitBreaker> breakers = new ArrayList<>(BREAKERS.values());
+        Collections.sort(breakers, new Comparator<CircuitBreaker>() {
+            @Override
+            public int compare(CircuitBreaker a, CircuitBreaker b) {
+                return a.getServer().compareTo(b.getServer());
+            }
+        });
+        return breakers;
+    }
+}
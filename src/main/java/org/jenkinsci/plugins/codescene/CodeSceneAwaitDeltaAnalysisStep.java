@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.codescene;
+
+import com.google.inject.Inject;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.model.Computer;
+import hudson.model.Result;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import java.util.concurrent.Future;
+
+/**
+ * Pipeline step that sends the commits found by {@link CodeSceneDeltaAnalysisStep} to CodeScene. It needs no
+ * workspace, so it runs outside of {@code node} and doesn't hold an executor. The requests run on a background
+ * thread, and the step completes when the responses from CodeScene have arrived.
+ * <p>
+ * The results are reported exactly like the build step does it: as {@link CodeSceneBuildAction}s, with the build
+ * marked as unstable when a delta hits the risk threshold.
+ */
+public class CodeSceneAwaitDeltaAnalysisStep extends AbstractStepImpl {
+    private final PendingDeltaAnalyses analyses;
+
+    @DataBoundConstructor
+    public CodeSceneAwaitDeltaAnalysisStep(PendingDeltaAnalyses analyses) {
+        this.analyses = analyses;
+    }
+
+    public PendingDeltaAnalyses getAnalyses() {
+        return analyses;
+    }
+
+    public static final class Execution extends AbstractStepExecutionImpl {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient CodeSceneAwaitDeltaAnalysisStep step;
+        @StepContextParameter
+        private transient Run<?, ?> run;
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        // kept with the Pipeline, so that the analyses can start over after a restart
+        private PendingDeltaAnalyses analyses;
+        private transient volatile Future<?> running;
+
+        @Override
+        public boolean start() throws Exception {
+            analyses = step.getAnalyses();
+            if (analyses == null) {
+                throw new AbortException("codesceneAwaitDeltaAnalysis needs the value returned by codesceneDeltaAnalysis.");
+            }
+            analyse(run, listener);
+            return false;
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            final Future<?> analysing = running;
+            if (analysing != null) {
+                analysing.cancel(true);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public void onResume() {
+            // the HTTP requests didn't survive the restart, but the commits did. The result cache and the coalescing
+            // of identical requests make sure that what was analysed already isn't analysed again.
+            try {
+                final TaskListener resumed = getContext().get(TaskListener.class);
+                resumed.getLogger().println("Jenkins restarted during the CodeScene delta analyses, running them again.");
+                analyse(getContext().get(Run.class), resumed);
+            } catch (Exception e) {
+                getContext().onFailure(e);
+            }
+        }
+
+        private void analyse(final Run<?, ?> run, final TaskListener listener) {
+            final CodeSceneBuilder builder = analyses.toBuilder();
+            running = Computer.threadPoolForRemoting.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // the clock starts now, the commits may have been found long before
+                        final CodeSceneBuilder.PendingAnalyses pending = builder.analysesOf(analyses.getCommits(),
+                                builder.getDescriptor().requestPolicy(System.currentTimeMillis()), null, run, listener);
+                        builder.publish(pending.call(), run, listener);
+                        getContext().onSuccess(null);
+                    } catch (CodeSceneUnavailableException e) {
+                        if (builder.getDescriptor().resultWhenUnavailable() == Result.FAILURE) {
+                            getContext().onFailure(new AbortException(e.getMessage()));
+                        } else {
+                            builder.skipUnavailable(e, run, listener);
+                            getContext().onSuccess(null);
+                        }
+                    } catch (InterruptedException e) {
+                        getContext().onFailure(new AbortException("The CodeScene delta analyses were interrupted."));
+                    } catch (Throwable t) {
+                        getContext().onFailure(t);
+                    }
+                }
+            });
+        }
+    }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AbstractStepDescriptorImpl {
+        public DescriptorImpl() {
+            super(Execution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "codesceneAwaitDeltaAnalysis";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Run CodeScene Delta Analysis Asynchronously";
+        }
+    }
+}
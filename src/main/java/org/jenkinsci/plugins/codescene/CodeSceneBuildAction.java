@@ -1,44 +1,334 @@
 package org.jenkinsci.plugins.codescene;
 
-import hudson.model.Action;
+import hudson.model.Run;
+import jenkins.model.RunAction2;
+import org.jenkinsci.plugins.codescene.Domain.Commit;
+import org.jenkinsci.plugins.codescene.Domain.Warning;
+import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerProxy;
+import org.kohsuke.stapler.StaplerResponse;
 
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The delta analysis results of a build.
+ * <p>
+ * The build record only keeps a summary of the results. The entries, with their commits and warnings, go to a
+ * separate file in the build directory, see {@link StoredEntries}. They are read back when somebody looks at them,
+ * and only softly referenced after that, so that browsing the build history doesn't fill the heap with warnings.
+ * <p>
+ * A build may run several CodeScene steps with the same title, so each action takes a name of its own within the
+ * build when it is attached. The name is both the URL of its page and the name of its file.
+ * <p>
+ * The build page only shows the riskiest entries. All of them are on a page of their own, which fetches them in
+ * pages from {@link #doEntries}, riskiest first.
+ */
+public class CodeSceneBuildAction implements RunAction2, StaplerProxy {
+    private static final Logger LOGGER = Logger.getLogger(CodeSceneBuildAction.class.getName());
+
+    static final int SUMMARY_ENTRIES = 5;
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    private static final Comparator<CodeSceneBuildActionEntry> RISKIEST_FIRST = new Comparator<CodeSceneBuildActionEntry>() {
+        @Override
+        public int compare(CodeSceneBuildActionEntry a, CodeSceneBuildActionEntry b) {
+            return Integer.compare(b.getRisk().getValue(), a.getRisk().getValue());
+        }
+    };
 
-public class CodeSceneBuildAction implements Action, StaplerProxy {
     private final String title;
-    private final List<CodeSceneBuildActionEntry> entries;
+    // null for build records written before the names were unique, those use the slug of the title
+    private String name;
+    private int entryCount;
+    private int maxRisk;
+    private boolean hitsRiskThreshold;
+    private String entriesFile;
+    private List<String> notAnalysedCommits;
+
+    /**
+     * Build records written before the entries got a file of their own have them here. Moved to the file on load.
+     * Also the fallback when the file cannot be written.
+     */
+    @Deprecated
+    private List<CodeSceneBuildActionEntry> entries;
+
+    private transient Run<?, ?> run;
+    // until the action is attached to a build there's no file to load the entries from
+    private transient List<CodeSceneBuildActionEntry> unsavedEntries;
+    private transient Reference<List<CodeSceneBuildActionEntry>> loadedEntries;
 
     public CodeSceneBuildAction(String title, List<CodeSceneBuildActionEntry> entries) {
+        this(title, entries, Collections.<String>emptyList());
+    }
+
+    /**
+     * @param notAnalysedCommits the commits that were skipped since the build was known to be unstable already
+     */
+    public CodeSceneBuildAction(String title, List<CodeSceneBuildActionEntry> entries, List<String> notAnalysedCommits) {
         this.title = title;
-        this.entries = entries;
+        this.unsavedEntries = entries;
+        this.notAnalysedCommits = notAnalysedCommits.isEmpty() ? null : new ArrayList<>(notAnalysedCommits);
+        summarize(entries);
     }
 
     public String getTitle() {
-        return title;
+        return "CodeScene " + title;
+    }
+
+    public synchronized List<CodeSceneBuildActionEntry> getEntries() {
+        if (unsavedEntries != null) {
+            return unsavedEntries;
+        }
+        List<CodeSceneBuildActionEntry> loaded = loadedEntries == null ? null : loadedEntries.get();
+        if (loaded == null) {
+            loaded = loadEntries();
+            loadedEntries = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the entries with the highest risk first, in their original order when the risk is the same
+     */
+    public List<CodeSceneBuildActionEntry> getEntriesByRisk() {
+        final List<CodeSceneBuildActionEntry> sorted = new ArrayList<>(getEntries());
+        Collections.sort(sorted, RISKIEST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * The entries shown on the build page.
+     */
+    public List<CodeSceneBuildActionEntry> getSummaryEntries() {
+        final List<CodeSceneBuildActionEntry> sorted = getEntriesByRisk();
+        return sorted.subList(0, Math.min(SUMMARY_ENTRIES, sorted.size()));
+    }
+
+    public List<String> getNotAnalysedCommits() {
+        return notAnalysedCommits == null ? Collections.<String>emptyList() : Collections.unmodifiableList(notAnalysedCommits);
+    }
+
+    public boolean getHasMoreEntries() {
+        return entryCount > SUMMARY_ENTRIES;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return the highest risk of any entry, or 0 if there are no entries
+     */
+    public int getMaxRisk() {
+        return maxRisk;
     }
 
-    public List<CodeSceneBuildActionEntry> getEntries() {
-        return entries;
+    public boolean getHitsRiskThreshold() {
+        return hitsRiskThreshold;
     }
 
     @Override
     public String getIconFileName() {
-        return null;
+        return "/plugin/codescene/images/codescene.png";
     }
 
     @Override
     public String getDisplayName() {
-        return null;
+        return "CodeScene " + title;
     }
 
     @Override
     public String getUrlName() {
-        return null;
+        return name != null ? name : slug();
     }
 
     @Override
     public Object getTarget() {
-        return null;
+        return this;
+    }
+
+    public Run<?, ?> getRun() {
+        return run;
+    }
+
+    /**
+     * A page of the entries, riskiest first, with their commits and warnings.
+     *
+     * @param page the page, starting at 0
+     * @param size the number of entries on a page, at most {@value #MAX_PAGE_SIZE}
+     */
+    public void doEntries(StaplerResponse rsp, @QueryParameter int page, @QueryParameter int size) throws IOException {
+        final int pageSize = size < 1 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        final List<CodeSceneBuildActionEntry> sorted = getEntriesByRisk();
+        final int from = (int) Math.min((long) Math.max(page, 0) * pageSize, sorted.size());
+        final int to = Math.min(from + pageSize, sorted.size());
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        try (JsonGenerator json = Json.createGenerator(rsp.getWriter())) {
+            json.writeStartObject();
+            json.write("total", sorted.size());
+            json.write("page", Math.max(page, 0));
+            json.write("size", pageSize);
+            json.write("hasMore", to < sorted.size());
+            json.writeStartArray("entries");
+            for (CodeSceneBuildActionEntry entry : sorted.subList(from, to)) {
+                writeEntry(json, entry);
+            }
+            json.writeEnd();
+            json.writeStartArray("notAnalysed");
+            for (String commit : getNotAnalysedCommits()) {
+                json.write(commit);
+            }
+            json.writeEnd();
+            json.writeEnd();
+        }
+    }
+
+    private static void writeEntry(JsonGenerator json, CodeSceneBuildActionEntry entry) {
+        json.writeStartObject();
+        json.write("title", entry.getTitle());
+        json.write("risk", entry.getRisk().getValue());
+        json.write("riskThreshold", entry.getRiskThreshold());
+        json.write("hitsRiskThreshold", entry.getHitsRiskThreshold());
+        if (entry.getViewUrl() != null) {
+            json.write("viewUrl", entry.getViewUrl().toExternalForm());
+        }
+        json.writeStartArray("commits");
+        if (entry.getShowCommits()) {
+            for (Commit commit : entry.getCommits()) {
+                json.write(commit.value());
+            }
+        }
+        json.writeEnd();
+        json.writeStartArray("warnings");
+        for (Warning warning : entry.getWarnings()) {
+            json.writeStartObject();
+            json.write("category", warning.getCategory().value());
+            json.writeStartArray("details");
+            for (String detail : warning.getDetails()) {
+                json.write(detail);
+            }
+            json.writeEnd();
+            json.writeEnd();
+        }
+        json.writeEnd();
+        json.writeEnd();
+    }
+
+    @Override
+    public synchronized void onAttached(Run<?, ?> r) {
+        run = r;
+        name = uniqueName(slug(), namesBefore(r));
+        if (saveEntries(unsavedEntries)) {
+            loadedEntries = new SoftReference<>(unsavedEntries);
+            unsavedEntries = null;
+        } else {
+            entries = unsavedEntries;
+        }
+    }
+
+    @Override
+    public synchronized void onLoad(Run<?, ?> r) {
+        run = r;
+        if (entries != null) {
+            // an old build record, the entries are left out the next time the build is saved
+            final List<CodeSceneBuildActionEntry> legacy = entries;
+            summarize(legacy);
+            // the actions before this one have their names already, so this one gets the same name on each load
+            name = uniqueName(slug(), namesBefore(r));
+            if (new File(run.getRootDir(), fileName()).exists()) {
+                // moved on an earlier load
+                entriesFile = fileName();
+                entries = null;
+            } else if (saveEntries(legacy)) {
+                entries = null;
+            } else {
+                unsavedEntries = legacy;
+            }
+        }
+    }
+
+    private void summarize(List<CodeSceneBuildActionEntry> entries) {
+        entryCount = entries.size();
+        maxRisk = 0;
+        hitsRiskThreshold = false;
+        for (CodeSceneBuildActionEntry entry : entries) {
+            maxRisk = Math.max(maxRisk, entry.getRisk().getValue());
+            hitsRiskThreshold |= entry.getHitsRiskThreshold();
+        }
+    }
+
+    /**
+     * @return true if the entries are safely on disk
+     */
+    private boolean saveEntries(List<CodeSceneBuildActionEntry> entries) {
+        try {
+            StoredEntries.write(new File(run.getRootDir(), fileName()), entries);
+            entriesFile = fileName();
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to store the CodeScene delta analysis results of " + run, e);
+            return false;
+        }
+    }
+
+    private String fileName() {
+        return getUrlName() + ".gz";
+    }
+
+    /**
+     * @return the names of the CodeScene actions of the build that come before this one
+     */
+    private Set<String> namesBefore(Run<?, ?> r) {
+        final Set<String> names = new HashSet<>();
+        for (CodeSceneBuildAction other : r.getActions(CodeSceneBuildAction.class)) {
+            if (other == this) {
+                break;
+            }
+            names.add(other.getUrlName());
+        }
+        return names;
+    }
+
+    /**
+     * @return the slug, or the slug with the first number from 2 that makes it unique
+     */
+    static String uniqueName(String slug, Set<String> taken) {
+        String name = slug;
+        for (int i = 2; taken.contains(name); i++) {
+            name = slug + "-" + i;
+        }
+        return name;
+    }
+
+    private String slug() {
+        return "codescene-" + title.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "-");
+    }
+
+    private List<CodeSceneBuildActionEntry> loadEntries() {
+        if (run == null || entriesFile == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return Collections.unmodifiableList(StoredEntries.read(new File(run.getRootDir(), entriesFile)));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read the CodeScene delta analysis results of " + run, e);
+            return Collections.emptyList();
+        }
     }
 }
@@ -2,17 +2,15 @@ package org.jenkinsci.plugins.codescene;
 
 import static java.util.Collections.singletonList;
 
-import com.cloudbees.plugins.credentials.CredentialsMatcher;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
-import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
-import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import hudson.EnvVars;
 import hudson.Launcher;
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.XmlFile;
 import hudson.console.HyperlinkNote;
 import hudson.model.Item;
 import hudson.model.Queue;
@@ -20,11 +18,14 @@ import hudson.model.Result;
 import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.model.queue.Tasks;
+import hudson.remoting.VirtualChannel;
 import hudson.security.ACL;
 import hudson.tasks.Builder;
 import hudson.tasks.BuildStepDescriptor;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import hudson.util.NamingThreadFactory;
 import jenkins.model.Jenkins;
 import jenkins.tasks.SimpleBuildStep;
 import net.sf.json.JSONObject;
@@ -37,18 +38,34 @@ import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.servlet.ServletException;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
     private static final int DEFAULT_RISK_THRESHOLD = 7;
     // default is the same as in codescene rest api and shouldn't be changed
     private static final int DEFAULT_COUPLING_THRESHOLD_PERCENT = 80;
+    private static final int DEFAULT_PARALLELISM = 1;
+    private static final int DEFAULT_MAX_COMMITS = 100;
 
     // required params
     private final String credentialsId;
@@ -62,6 +79,14 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
     private boolean markBuildAsUnstable;
     private int riskThreshold = DEFAULT_RISK_THRESHOLD;
     private int couplingThresholdPercent = DEFAULT_COUPLING_THRESHOLD_PERCENT;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean useGitCommandLine;
+    private boolean analyzeLargestCommitsFirst;
+    private boolean stopAtRiskThreshold;
+    // 0 means no limit, which is what jobs saved before the limit existed keep
+    private int maxCommits = DEFAULT_MAX_COMMITS;
+    private CommitLimitStrategy commitLimitStrategy = CommitLimitStrategy.NEWEST;
+    private boolean runOnAgent;
 
     // deprecated authentication params - use credentialsId instead
     @Deprecated private transient String username;
@@ -112,6 +137,34 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
         return couplingThresholdPercent;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isUseGitCommandLine() {
+        return useGitCommandLine;
+    }
+
+    public boolean isAnalyzeLargestCommitsFirst() {
+        return analyzeLargestCommitsFirst;
+    }
+
+    public boolean isStopAtRiskThreshold() {
+        return stopAtRiskThreshold;
+    }
+
+    public int getMaxCommits() {
+        return maxCommits;
+    }
+
+    public CommitLimitStrategy getCommitLimitStrategy() {
+        return commitLimitStrategy;
+    }
+
+    public boolean isRunOnAgent() {
+        return runOnAgent;
+    }
+
     @DataBoundSetter
     public void setAnalyzeLatestIndividually(boolean analyzeLatestIndividually) {
         this.analyzeLatestIndividually = analyzeLatestIndividually;
@@ -144,12 +197,54 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
                 : couplingThresholdPercent;
     }
 
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism < 1 ? DEFAULT_PARALLELISM : parallelism;
+    }
+
+    @DataBoundSetter
+    public void setUseGitCommandLine(boolean useGitCommandLine) {
+        this.useGitCommandLine = useGitCommandLine;
+    }
+
+    @DataBoundSetter
+    public void setAnalyzeLargestCommitsFirst(boolean analyzeLargestCommitsFirst) {
+        this.analyzeLargestCommitsFirst = analyzeLargestCommitsFirst;
+    }
+
+    @DataBoundSetter
+    public void setStopAtRiskThreshold(boolean stopAtRiskThreshold) {
+        this.stopAtRiskThreshold = stopAtRiskThreshold;
+    }
+
+    @DataBoundSetter
+    public void setMaxCommits(int maxCommits) {
+        this.maxCommits = maxCommits < 0 ? DEFAULT_MAX_COMMITS : maxCommits;
+    }
+
+    @DataBoundSetter
+    public void setCommitLimitStrategy(CommitLimitStrategy commitLimitStrategy) {
+        this.commitLimitStrategy = commitLimitStrategy == null ? CommitLimitStrategy.NEWEST : commitLimitStrategy;
+    }
+
+    @DataBoundSetter
+    public void setRunOnAgent(boolean runOnAgent) {
+        this.runOnAgent = runOnAgent;
+    }
+
     // handle default values for new fields with regards to existing jobs (backward compatibility)
     // check https://wiki.jenkins-ci.org/display/JENKINS/Hint+on+retaining+backward+compatibility
     protected Object readResolve() {
         if (couplingThresholdPercent == 0) {
             couplingThresholdPercent = DEFAULT_COUPLING_THRESHOLD_PERCENT;
         }
+        if (parallelism == 0) {
+            parallelism = DEFAULT_PARALLELISM;
+        }
+        // maxCommits stays 0 for existing jobs, so that they go on analysing every commit
+        if (commitLimitStrategy == null) {
+            commitLimitStrategy = CommitLimitStrategy.NEWEST;
+        }
         return this;
     }
 
@@ -169,31 +264,55 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
         return commitSets;
     }
 
-    private ArrayList<CodeSceneBuildActionEntry> runDeltaAnalysesOnIndividualCommits(Configuration config, List<String> revisions, TaskListener listener) throws MalformedURLException {
-        List<Commits> commitSets = revisionsAsIndividualCommitSets(revisions);
+    /**
+     * @param analysisOrder the revisions in the order to analyse them, the likely riskiest first
+     * @return the entries of the analysed commits, in commit order. With {@link #isStopAtRiskThreshold()} the commits
+     * left once a delta hits the risk threshold are not analysed.
+     */
+    private ArrayList<CodeSceneBuildActionEntry> runDeltaAnalysesOnIndividualCommits(final Configuration config, List<String> revisions,
+                                                                                    List<String> analysisOrder, final RequestPolicy policy,
+                                                                                    final VirtualChannel agent, final String job,
+                                                                                    final TaskListener listener) throws IOException, InterruptedException {
+        List<Commits> commitSets = revisionsAsIndividualCommitSets(analysisOrder);
         ArrayList<CodeSceneBuildActionEntry> entries = new ArrayList<>(commitSets.size());
 
         if (!commitSets.isEmpty()) {
-            listener.getLogger().format("Starting delta analysis on %d commit(s)...%n", commitSets.size());
-            for (Commits commits : commitSets) {
-                DeltaAnalysis deltaAnalysis = new DeltaAnalysis(config);
-                listener.getLogger().format("Running delta analysis on commits (%s) in repository %s.%n", commits.value(), config.gitRepisitoryToAnalyze().value());
-                DeltaAnalysisResult result = deltaAnalysis.runOn(commits);
-
-                URL detailsUrl = new URL(
-                        config.codeSceneUrl().getProtocol(),
-                        config.codeSceneUrl().getHost(),
-                        config.codeSceneUrl().getPort(),
-                        result.getViewUrl());
-
-                entries.add(new CodeSceneBuildActionEntry(
-                        commits.value().get(0).value(),
-                        false,
-                        commits.value(),
-                        result.getRisk(),
-                        result.getWarnings().value(),
-                        detailsUrl,
-                        riskThreshold));
+            final int threads = Math.min(getDescriptor().effectiveParallelism(parallelism), commitSets.size());
+            listener.getLogger().format("Starting delta analysis on %d commit(s), running up to %d in parallel...%n",
+                    commitSets.size(), threads);
+
+            final DeltaAnalysisCache cache = getDescriptor().resultCache();
+            final AtomicInteger cacheHits = new AtomicInteger();
+            // set once the build is known to be unstable, if that's all we want to know
+            final AtomicBoolean thresholdHit = new AtomicBoolean();
+            ExecutorService executor = Executors.newFixedThreadPool(threads,
+                    new NamingThreadFactory(new DaemonThreadFactory(), "CodeScene delta analysis"));
+            try {
+                List<Future<CodeSceneBuildActionEntry>> pending = new ArrayList<>(commitSets.size());
+                for (final Commits commits : commitSets) {
+                    pending.add(executor.submit(new Callable<CodeSceneBuildActionEntry>() {
+                        @Override
+                        public CodeSceneBuildActionEntry call() throws IOException {
+                            return runDeltaAnalysisOnCommit(config, commits, cache, cacheHits, thresholdHit, policy, agent, job, listener);
+                        }
+                    }));
+                }
+                for (Future<CodeSceneBuildActionEntry> commitEntry : pending) {
+                    final CodeSceneBuildActionEntry entry = awaitEntries(commitEntry);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+                // report in commit order, regardless of the order of analysis
+                inCommitOrder(entries, revisions);
+            } finally {
+                executor.shutdownNow();
+                cache.save();
+            }
+
+            if (cache.isEnabled()) {
+                listener.getLogger().format("Delta analysis result cache: %d hit(s), %d miss(es).%n",
+                        cacheHits.get(), commitSets.size() - cacheHits.get());
             }
         } else {
             listener.getLogger().format("No commits to run delta analysis on.%n");
@@ -202,11 +321,177 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
         return entries;
     }
 
-    private CodeSceneBuildActionEntry runDeltaAnalysisOnBranchDiff(Configuration config, List<String> revisions, String branchName, TaskListener listener) throws MalformedURLException {
+    private static void inCommitOrder(List<CodeSceneBuildActionEntry> entries, List<String> revisions) {
+        final Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < revisions.size(); i++) {
+            positions.put(revisions.get(i), i);
+        }
+        Collections.sort(entries, new Comparator<CodeSceneBuildActionEntry>() {
+            @Override
+            public int compare(CodeSceneBuildActionEntry a, CodeSceneBuildActionEntry b) {
+                return Integer.compare(positions.get(a.getTitle()), positions.get(b.getTitle()));
+            }
+        });
+    }
+
+    /**
+     * The revisions with the ones touching the most files first, which are the likely risky ones.
+     * Revisions touching the same number of files stay in commit order.
+     */
+    static List<String> largestFirst(List<CommitRangeResolver.Revision> revisions) {
+        final List<CommitRangeResolver.Revision> sorted = new ArrayList<>(revisions);
+        Collections.sort(sorted, new Comparator<CommitRangeResolver.Revision>() {
+            @Override
+            public int compare(CommitRangeResolver.Revision a, CommitRangeResolver.Revision b) {
+                return Integer.compare(b.getFilesTouched(), a.getFilesTouched());
+            }
+        });
+        return names(sorted);
+    }
+
+    private static List<String> names(List<CommitRangeResolver.Revision> revisions) {
+        final List<String> names = new ArrayList<>(revisions.size());
+        for (CommitRangeResolver.Revision revision : revisions) {
+            names.add(revision.getName());
+        }
+        return names;
+    }
+
+    /**
+     * @return the revisions without an entry, in commit order
+     */
+    static List<String> notAnalysed(List<String> revisions, List<CodeSceneBuildActionEntry> entries) {
+        final Set<String> analysed = new HashSet<>();
+        for (CodeSceneBuildActionEntry entry : entries) {
+            analysed.add(entry.getTitle());
+        }
+        final List<String> skipped = new ArrayList<>();
+        for (String revision : revisions) {
+            if (!analysed.contains(revision)) {
+                skipped.add(revision);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Where the checkpoint of the branch moves once the analyses of a build are done: to the current commit if every
+     * new commit got a result. Otherwise it stays, so that the next build sends the commits left out once more.
+     *
+     * @param skippedByLimit whether the commit limit of the job left out some of the new commits
+     * @param notAnalysed the commits that were to be analysed, but got no result
+     * @return the commit to record, or null to keep the checkpoint as it is
+     */
+    static String nextCheckpoint(String currentCommit, boolean skippedByLimit, List<String> notAnalysed) {
+        return skippedByLimit || !notAnalysed.isEmpty() ? null : currentCommit;
+    }
+
+    /**
+     * Analyses a single commit, unless it has a cached result, which never reaches CodeScene.
+     *
+     * @return the entry of the commit, or null if {@code thresholdHit} was set before its request was sent
+     */
+    private CodeSceneBuildActionEntry runDeltaAnalysisOnCommit(Configuration config, Commits commits, DeltaAnalysisCache cache,
+                                                               AtomicInteger cacheHits, AtomicBoolean thresholdHit,
+                                                               RequestPolicy policy, VirtualChannel agent, String job,
+                                                               TaskListener listener) throws IOException {
+        final Commit commit = commits.value().get(0);
+        DeltaAnalysisResult result = cache.get(config, commit);
+        if (result != null) {
+            cacheHits.incrementAndGet();
+            DeltaAnalysisMetrics.get().cacheHit();
+            listener.getLogger().format("Using cached delta analysis result for commits (%s) in repository %s.%n", commits.value(), config.gitRepisitoryToAnalyze().value());
+        } else {
+            if (cache.isEnabled()) {
+                DeltaAnalysisMetrics.get().cacheMiss();
+            }
+            if (thresholdHit.get()) {
+                return null;
+            }
+            listener.getLogger().format("Running delta analysis on commits (%s) in repository %s.%n", commits.value(), config.gitRepisitoryToAnalyze().value());
+            result = runOnUnless(config, commits, thresholdHit, policy, agent, job, listener);
+            if (result == null) {
+                return null;
+            }
+            cache.put(config, commit, result);
+        }
+
+        final CodeSceneBuildActionEntry entry = individualCommitEntry(config, result);
+        if (stopsAtRiskThreshold() && entry.getHitsRiskThreshold() && thresholdHit.compareAndSet(false, true)) {
+            listener.getLogger().format("Commit %s hits the risk threshold (%d), not sending the remaining commits to CodeScene.%n",
+                    entry.getTitle(), riskThreshold);
+        }
+        return entry;
+    }
+
+    /**
+     * Runs the analysis here, or on the agent if one is given, unless {@code stop} is set before its request is sent.
+     *
+     * @param job whose turn it is when requests to the server have to wait, see {@link RequestThrottle}
+     * @return the result, or null if the analysis was stopped
+     */
+    private DeltaAnalysisResult runOnUnless(Configuration config, Commits commits, AtomicBoolean stop, RequestPolicy policy,
+                                            VirtualChannel agent, String job, TaskListener listener) throws IOException {
+        final CircuitBreaker breaker = getDescriptor().circuitBreakerFor(config.codeSceneUrl());
+        final RequestThrottle throttle = getDescriptor().requestThrottleFor(config.codeSceneUrl());
+        if (agent == null) {
+            try (CodeSceneHttpClient.Lease httpClient = getDescriptor().httpClient()) {
+                return new DeltaAnalysis(config, httpClient.client(), policy, breaker, throttle, job, listener)
+                        .runOnUnless(commits, stop);
+            }
+        }
+        return AgentDeltaAnalyses.runOnUnless(agent, config, commits, stop, policy, getDescriptor().connectionPoolSettings(),
+                breaker, throttle, job, listener);
+    }
+
+    private boolean stopsAtRiskThreshold() {
+        return markBuildAsUnstable && stopAtRiskThreshold;
+    }
+
+    private CodeSceneBuildActionEntry individualCommitEntry(Configuration config, DeltaAnalysisResult result) throws MalformedURLException {
+        final List<Commit> commits = result.getCommits().value();
+
+        URL detailsUrl = new URL(
+                config.codeSceneUrl().getProtocol(),
+                config.codeSceneUrl().getHost(),
+                config.codeSceneUrl().getPort(),
+                result.getViewUrl());
+
+        return new CodeSceneBuildActionEntry(
+                commits.get(0).value(),
+                false,
+                commits,
+                result.getRisk(),
+                result.getWarnings().value(),
+                detailsUrl,
+                riskThreshold);
+    }
+
+    private static <T> T awaitEntries(Future<T> entries) throws IOException, InterruptedException {
+        try {
+            return entries.get();
+        } catch (ExecutionException e) {
+            // rethrow as if the analysis had run on the build thread
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private CodeSceneBuildActionEntry runDeltaAnalysisOnBranchDiff(Configuration config, List<String> revisions, String branchName,
+                                                                   RequestPolicy policy, VirtualChannel agent, String job,
+                                                                   TaskListener listener) throws IOException {
         Commits commitSet = revisionsAsCommitSet(revisions);
-        DeltaAnalysis deltaAnalysis = new DeltaAnalysis(config);
         listener.getLogger().format("Running delta analysis on branch %s in repository %s.%n", branchName, config.gitRepisitoryToAnalyze().value());
-        DeltaAnalysisResult result = deltaAnalysis.runOn(commitSet);
+        DeltaAnalysisResult result = runOnUnless(config, commitSet, new AtomicBoolean(), policy, agent, job, listener);
 
         URL detailsUrl = new URL(
                 config.codeSceneUrl().getProtocol(),
@@ -224,38 +509,282 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
         }
 
         try {
-            URL url = new URL(deltaAnalysisUrl);
+            publish(prepare(build, workspace, launcher, listener).call(), build, listener);
+        } catch (CodeSceneUnavailableException e) {
+            skipUnavailable(e, build, listener);
+        } catch (InterruptedException | IOException e) {
+            listener.error("Failed to run delta analysis: %s", e);
+            build.setResult(Result.FAILURE);
+        }
+    }
+
+    /**
+     * CodeScene is known to be down, so we didn't wait for it. The build gets the result configured for that case.
+     */
+    void skipUnavailable(CodeSceneUnavailableException e, Run<?, ?> build, TaskListener listener) {
+        final Result result = getDescriptor().resultWhenUnavailable();
+        listener.getLogger().format("Skipped the delta analysis: %s The build result is set to %s.%n", e.getMessage(), result);
+        build.setResult(result);
+    }
 
-            Configuration codesceneConfig = new Configuration(url, userConfig(), new Repository(repository),
-                    couplingThresholdPercent);
-            EnvVars env = build.getEnvironment(listener);
+    /**
+     * Resolves what to analyse, which needs the workspace and has to happen on the build thread.
+     * The returned analyses only talk to CodeScene, so they may run on any thread.
+     */
+    PendingAnalyses prepare(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
+        // the clock starts now, so that resolving the commits counts against the time allotted to the step too
+        final RequestPolicy policy = getDescriptor().requestPolicy(System.currentTimeMillis());
+        final Configuration codesceneConfig = configuration();
+        final ResolvedCommits commits = resolve(build, workspace, launcher, listener);
+
+        VirtualChannel agent = null;
+        if (isRunOnAgent()) {
+            agent = workspace.getChannel();
+            listener.getLogger().println("Sending the delta analyses to CodeScene from the build agent.");
+        }
 
-            String previousCommit = env.get("GIT_PREVIOUS_SUCCESSFUL_COMMIT");
-            String currentCommit = env.get("GIT_COMMIT");
-            String branch = env.get("GIT_BRANCH");
+        return analysesOf(codesceneConfig, commits, policy, agent, build, listener);
+    }
 
-            if (isAnalyzeLatestIndividually() && previousCommit != null) {
-                List<String> revisions = getCommitRange(build, workspace, launcher, listener, previousCommit, currentCommit);
-                if (revisions.isEmpty()) {
-                    listener.getLogger().println("No new commits to analyze individually for this build.");
-                } else {
-                    ArrayList<CodeSceneBuildActionEntry> entries = runDeltaAnalysesOnIndividualCommits(codesceneConfig, revisions, listener);
-                    for (CodeSceneBuildActionEntry entry : entries) {
-                        markAsUnstableWhenAtRiskThreshold(riskThreshold, entry, build, listener);
-                    }
-                    build.addAction(new CodeSceneBuildAction("Delta - Individual Commits", entries));
+    /**
+     * The analyses of commits resolved earlier, maybe by another build step, see {@link CodeSceneDeltaAnalysisStep}.
+     *
+     * @param agent where to send the requests from, null to send them from the controller
+     */
+    PendingAnalyses analysesOf(ResolvedCommits commits, RequestPolicy policy, VirtualChannel agent, Run<?, ?> build,
+                               TaskListener listener) throws MalformedURLException {
+        return analysesOf(configuration(), commits, policy, agent, build, listener);
+    }
+
+    private PendingAnalyses analysesOf(Configuration codesceneConfig, ResolvedCommits commits, RequestPolicy policy,
+                                       VirtualChannel agent, Run<?, ?> build, TaskListener listener) {
+        final AnalysisCheckpoints checkpoints = isAnalyzeLatestIndividually() ? AnalysisCheckpoints.of(build.getParent()) : null;
+        return new PendingAnalyses(codesceneConfig, commits, checkpoints, policy, agent, build.getParent().getFullName(), listener);
+    }
+
+    private Configuration configuration() throws MalformedURLException {
+        return new Configuration(new URL(deltaAnalysisUrl), userConfig(), new Repository(repository), couplingThresholdPercent);
+    }
+
+    /**
+     * Finds the commits to analyse in the workspace. Nothing is sent to CodeScene yet.
+     */
+    ResolvedCommits resolve(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
+        EnvVars env = build.getEnvironment(listener);
+
+        String previousCommit = env.get("GIT_PREVIOUS_SUCCESSFUL_COMMIT");
+        String currentCommit = env.get("GIT_COMMIT");
+        String branch = env.get("GIT_BRANCH");
+
+        List<String> individualRevisions = null;
+        List<String> analysisOrder = null;
+        List<String> combinedRevisions = null;
+        List<String> branchRevisions = null;
+        boolean skippedByLimit = false;
+        String checkpoint = null;
+
+        if (isAnalyzeLatestIndividually()) {
+            checkpoint = AnalysisCheckpoints.of(build.getParent()).get(branch);
+            if (checkpoint != null && !checkpoint.equals(previousCommit)) {
+                listener.getLogger().format("Analyzing the commits since %s, the last commit analyzed on this branch.%n", checkpoint);
+                previousCommit = checkpoint;
+            }
+        }
+        if (isAnalyzeLatestIndividually() && previousCommit != null) {
+            // when only the newest commits are analysed anyway, there's no need to walk any further back
+            final boolean limited = maxCommits > 0;
+            final int walkLimit = limited && commitLimitStrategy == CommitLimitStrategy.NEWEST ? maxCommits + 1 : 0;
+            List<CommitRangeResolver.Revision> revisions = getCommitRangeWithFilesTouched(build, workspace, launcher, listener,
+                    previousCommit, currentCommit, walkLimit, isAnalyzeLargestCommitsFirst());
+            if (revisions.isEmpty()) {
+                listener.getLogger().println("No new commits to analyze individually for this build.");
+            } else if (limited && revisions.size() > maxCommits) {
+                logCommitLimit(revisions.size(), previousCommit, listener);
+                switch (commitLimitStrategy) {
+                    case NEWEST:
+                    case SAMPLE:
+                        revisions = commitLimitStrategy.limit(revisions, maxCommits);
+                        skippedByLimit = true;
+                        break;
+                    case BRANCH_DIFF:
+                        combinedRevisions = names(revisions);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown commit limit strategy " + commitLimitStrategy);
                 }
             }
-            if (isAnalyzeBranchDiff() && getBaseRevision() != null) {
-                List<String> revisions = getCommitRange(build, workspace, launcher, listener, getBaseRevision(), currentCommit);
-                CodeSceneBuildActionEntry entry = runDeltaAnalysisOnBranchDiff(codesceneConfig, revisions, branch, listener);
+            if (combinedRevisions == null) {
+                individualRevisions = names(revisions);
+                analysisOrder = isAnalyzeLargestCommitsFirst() ? largestFirst(revisions) : individualRevisions;
+            }
+        }
+        if (isAnalyzeBranchDiff() && getBaseRevision() != null) {
+            branchRevisions = getCommitRange(build, workspace, launcher, listener, getBaseRevision(), currentCommit);
+        }
+
+        return new ResolvedCommits(individualRevisions, analysisOrder, combinedRevisions, branchRevisions, skippedByLimit,
+                branch, checkpoint, currentCommit);
+    }
+
+    private void logCommitLimit(int commits, String since, TaskListener listener) {
+        switch (commitLimitStrategy) {
+            case NEWEST:
+                listener.getLogger().format("More than %d commits since %s, the limit for this job. Analyzing the newest %d commits only.%n",
+                        maxCommits, since, maxCommits);
+                break;
+            case SAMPLE:
+                listener.getLogger().format("%d commits since %s, more than the limit of %d for this job. Analyzing %d commits spread evenly over them.%n",
+                        commits, since, maxCommits, maxCommits);
+                break;
+            case BRANCH_DIFF:
+                listener.getLogger().format("%d commits since %s, more than the limit of %d for this job. Analyzing them together as one delta.%n",
+                        commits, since, maxCommits);
+                break;
+        }
+    }
+
+    /**
+     * Attaches the results to the build, and marks it as unstable when any of them hits the risk threshold.
+     * Also adds the build to the risk trend of the job.
+     */
+    void publish(List<CodeSceneBuildAction> actions, Run<?, ?> build, TaskListener listener) throws IOException {
+        for (CodeSceneBuildAction action : actions) {
+            for (CodeSceneBuildActionEntry entry : action.getEntries()) {
                 markAsUnstableWhenAtRiskThreshold(riskThreshold, entry, build, listener);
-                build.addAction(new CodeSceneBuildAction("Delta - By Branch", singletonList(entry)));
             }
+            build.addAction(action);
+        }
+        if (!actions.isEmpty()) {
+            try {
+                RiskTrendIndex.of(build.getParent()).append(
+                        RiskTrendIndex.BuildRisk.of(build.getNumber(), build.getTimeInMillis(), actions));
+            } catch (IOException e) {
+                // the results are attached to the build, only the trend misses them
+                listener.getLogger().format("Failed to add the build to the CodeScene risk trend: %s%n", e.getMessage());
+            }
+        }
+    }
 
-        } catch (InterruptedException | IOException e) {
-            listener.error("Failed to run delta analysis: %s", e);
-            build.setResult(Result.FAILURE);
+    /**
+     * The commits a build analyses, as found in its workspace. They may be kept, e.g. by a Pipeline, and analysed
+     * once the workspace is gone.
+     */
+    static final class ResolvedCommits implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final ResolvedCommits NOTHING = new ResolvedCommits(null, null, null, null, false, null, null, null);
+
+        private final List<String> individualRevisions;
+        private final List<String> analysisOrder;
+        private final List<String> combinedRevisions;
+        private final List<String> branchRevisions;
+        private final boolean skippedByLimit;
+        private final String branch;
+        private final String checkpoint;
+        private final String currentCommit;
+
+        /**
+         * @param combinedRevisions too many new commits to analyse individually, to be analysed as one delta instead
+         * @param skippedByLimit whether the commit limit of the job left out some of the new commits
+         * @param checkpoint the checkpoint of the branch when the commits were resolved, or null if it had none
+         */
+        ResolvedCommits(List<String> individualRevisions, List<String> analysisOrder, List<String> combinedRevisions,
+                        List<String> branchRevisions, boolean skippedByLimit, String branch, String checkpoint,
+                        String currentCommit) {
+            this.individualRevisions = copyOf(individualRevisions);
+            this.analysisOrder = copyOf(analysisOrder);
+            this.combinedRevisions = copyOf(combinedRevisions);
+            this.branchRevisions = copyOf(branchRevisions);
+            this.skippedByLimit = skippedByLimit;
+            this.branch = branch;
+            this.checkpoint = checkpoint;
+            this.currentCommit = currentCommit;
+        }
+
+        private static List<String> copyOf(List<String> revisions) {
+            // the lists of the resolver may be views, which don't serialize
+            return revisions == null ? null : new ArrayList<>(revisions);
+        }
+    }
+
+    /**
+     * The delta analyses of one build, with the commits to analyse already resolved.
+     */
+    final class PendingAnalyses implements Callable<List<CodeSceneBuildAction>> {
+        private final Configuration config;
+        private final List<String> individualRevisions;
+        private final List<String> analysisOrder;
+        private final List<String> combinedRevisions;
+        private final List<String> branchRevisions;
+        private final boolean skippedByLimit;
+        private final String branch;
+        private final String startCheckpoint;
+        private final String currentCommit;
+        private final AnalysisCheckpoints checkpoints;
+        private final RequestPolicy policy;
+        private final VirtualChannel agent;
+        private final String job;
+        private final TaskListener listener;
+
+        /**
+         * @param checkpoints where to record that the commits up to the current commit have been analysed,
+         *                    null unless commits are analysed individually
+         * @param agent where to send the requests from, null to send them from the controller
+         * @param job the full name of the job, which takes turns with other jobs when requests have to wait
+         */
+        PendingAnalyses(Configuration config, ResolvedCommits commits, AnalysisCheckpoints checkpoints, RequestPolicy policy,
+                        VirtualChannel agent, String job, TaskListener listener) {
+            this.config = config;
+            this.individualRevisions = commits.individualRevisions;
+            this.analysisOrder = commits.analysisOrder;
+            this.combinedRevisions = commits.combinedRevisions;
+            this.branchRevisions = commits.branchRevisions;
+            this.skippedByLimit = commits.skippedByLimit;
+            this.branch = commits.branch;
+            this.startCheckpoint = commits.checkpoint;
+            this.currentCommit = commits.currentCommit;
+            this.checkpoints = checkpoints;
+            this.policy = policy;
+            this.agent = agent;
+            this.job = job;
+            this.listener = listener;
+        }
+
+        @Override
+        public List<CodeSceneBuildAction> call() throws IOException, InterruptedException {
+            final List<CodeSceneBuildAction> actions = new ArrayList<>(2);
+            List<String> notAnalysed = Collections.emptyList();
+            if (individualRevisions != null && !individualRevisions.isEmpty()) {
+                ArrayList<CodeSceneBuildActionEntry> entries =
+                        runDeltaAnalysesOnIndividualCommits(config, individualRevisions, analysisOrder, policy, agent, job, listener);
+                notAnalysed = notAnalysed(individualRevisions, entries);
+                if (!notAnalysed.isEmpty()) {
+                    listener.getLogger().format("%d commit(s) not analysed, the build is unstable already.%n", notAnalysed.size());
+                }
+                actions.add(new CodeSceneBuildAction("Delta - Individual Commits", entries, notAnalysed));
+            }
+            if (combinedRevisions != null) {
+                final String title = branch != null ? branch : "New Commits";
+                CodeSceneBuildActionEntry entry = runDeltaAnalysisOnBranchDiff(config, combinedRevisions, title, policy, agent, job, listener);
+                actions.add(new CodeSceneBuildAction("Delta - All New Commits", singletonList(entry)));
+            }
+            if (checkpoints != null) {
+                // whatever happens to the build from here on, these commits are done. Without an earlier commit to
+                // start from nothing was analysed, but the next build can start from here.
+                final String checkpoint = nextCheckpoint(currentCommit, skippedByLimit, notAnalysed);
+                if (checkpoint != null) {
+                    if (!checkpoints.advance(branch, startCheckpoint, checkpoint)) {
+                        listener.getLogger().println("Another build of this branch moved the checkpoint meanwhile, so it stays where that build put it.");
+                    }
+                } else {
+                    listener.getLogger().println("Not every new commit was analysed, so the next build starts from the same commit as this one.");
+                }
+            }
+            if (branchRevisions != null) {
+                CodeSceneBuildActionEntry entry = runDeltaAnalysisOnBranchDiff(config, branchRevisions, branch, policy, agent, job, listener);
+                actions.add(new CodeSceneBuildAction("Delta - By Branch", singletonList(entry)));
+            }
+            return actions;
         }
     }
 
@@ -265,19 +794,11 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
             return new CodeSceneUser(username, password);
         }
 
-        final UsernamePasswordCredentials credentials = lookupCredentials(credentialsId);
-        if (credentials == null) {
+        final CodeSceneUser user = CodeSceneCredentials.get().user(credentialsId);
+        if (user == null) {
             throw new IllegalStateException("No CodeScene credentials found for id=" + credentialsId);
         }
-        return new CodeSceneUser(credentials.getUsername(), credentials.getPassword().getPlainText());
-    }
-
-
-    private UsernamePasswordCredentials lookupCredentials(String credentialId) {
-        List<UsernamePasswordCredentials> credentials = CredentialsProvider.lookupCredentials(UsernamePasswordCredentials.class,
-                Jenkins.getInstance(), ACL.SYSTEM, Collections.<DomainRequirement>emptyList());
-        CredentialsMatcher matcher = CredentialsMatchers.withId(credentialId);
-        return CredentialsMatchers.firstOrNull(credentials, matcher);
+        return user;
     }
 
     private void markAsUnstableWhenAtRiskThreshold(int threshold, CodeSceneBuildActionEntry entry, Run<?, ?> build, TaskListener listener) throws IOException {
@@ -295,6 +816,24 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
         }
     }
 
+    private List<CommitRangeResolver.Revision> getCommitRangeWithFilesTouched(
+            Run<?, ?> build,
+            FilePath workspace,
+            Launcher launcher,
+            TaskListener listener,
+            String fromRevision,
+            String toRevision,
+            int maxCommits,
+            boolean countFilesTouched) throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        try {
+            return new CommitRangeResolver(useGitCommandLine).resolveRevisions(build, workspace, launcher, listener,
+                    fromRevision, toRevision, maxCommits, countFilesTouched);
+        } finally {
+            DeltaAnalysisMetrics.get().commitRangeResolved(System.nanoTime() - start);
+        }
+    }
+
     private List<String> getCommitRange(
             Run<?, ?> build,
             FilePath workspace,
@@ -302,32 +841,312 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
             TaskListener listener,
             String fromRevision,
             String toRevision) throws IOException, InterruptedException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-        launcher.launch()
-                .cmdAsSingleString(String.format("git log --pretty='%%H' %s..%s", fromRevision, toRevision))
-                .pwd(workspace)
-                .envs(build.getEnvironment(listener))
-                .stdout(out)
-                .join();
-
-        ArrayList<String> revisions = new ArrayList<>();
-        for (String line : out.toString("UTF8").split("\n")) {
-            String trimmed = line.trim();
-            if (!trimmed.isEmpty()) {
-                revisions.add(trimmed);
-            }
+        final long start = System.nanoTime();
+        try {
+            return new CommitRangeResolver(useGitCommandLine)
+                    .resolve(build, workspace, launcher, listener, fromRevision, toRevision, 0);
+        } finally {
+            DeltaAnalysisMetrics.get().commitRangeResolved(System.nanoTime() - start);
         }
-        return revisions;
+    }
+
+    @Override
+    public DescriptorImpl getDescriptor() {
+        return (DescriptorImpl) super.getDescriptor();
     }
 
     @Symbol("codescene")
     @Extension
     public static final class DescriptorImpl extends BuildStepDescriptor<Builder> {
+        private static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 20;
+        private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+        private static final int DEFAULT_KEEP_ALIVE_SECONDS = 60;
+        private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS = 30;
+        private static final int DEFAULT_MAX_PARALLELISM = 4;
+        private static final int DEFAULT_RESULT_CACHE_SIZE = 1000;
+        private static final int DEFAULT_RESULT_CACHE_MAX_AGE_HOURS = 7 * 24;
+        private static final int DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+        private static final int DEFAULT_SOCKET_TIMEOUT_SECONDS = 300;
+        private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_SECONDS = 60;
+        private static final int DEFAULT_MAX_RETRIES = 3;
+        private static final int DEFAULT_INITIAL_RETRY_DELAY_MILLIS = 1000;
+        private static final int DEFAULT_MAX_RETRY_DELAY_SECONDS = 30;
+        private static final int DEFAULT_STEP_TIMEOUT_MINUTES = 60;
+        private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+        private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS = 60;
+        private static final String DEFAULT_RESULT_WHEN_UNAVAILABLE = Result.FAILURE.toString();
+        private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 10;
+
+        // global settings for the HTTP connection pool shared by all jobs
+        private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+        private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+        private int keepAliveSeconds = DEFAULT_KEEP_ALIVE_SECONDS;
+        private int idleConnectionTimeoutSeconds = DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS;
+        // caps the per job parallelism of individual commit analyses
+        private int maxParallelism = DEFAULT_MAX_PARALLELISM;
+        // results of individual commit analyses, a size of 0 disables the cache
+        private int resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
+        private int resultCacheMaxAgeHours = DEFAULT_RESULT_CACHE_MAX_AGE_HOURS;
+        // bounds on how long the requests to CodeScene, and all of them together, may take
+        private int connectTimeoutSeconds = DEFAULT_CONNECT_TIMEOUT_SECONDS;
+        private int socketTimeoutSeconds = DEFAULT_SOCKET_TIMEOUT_SECONDS;
+        private int connectionRequestTimeoutSeconds = DEFAULT_CONNECTION_REQUEST_TIMEOUT_SECONDS;
+        private int maxRetries = DEFAULT_MAX_RETRIES;
+        private int initialRetryDelayMillis = DEFAULT_INITIAL_RETRY_DELAY_MILLIS;
+        private int maxRetryDelaySeconds = DEFAULT_MAX_RETRY_DELAY_SECONDS;
+        private int stepTimeoutMinutes = DEFAULT_STEP_TIMEOUT_MINUTES;
+        // shared by all jobs sending analyses to the same CodeScene server
+        private int circuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+        private int circuitBreakerOpenSeconds = DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS;
+        private String resultWhenUnavailable = DEFAULT_RESULT_WHEN_UNAVAILABLE;
+        // per CodeScene server, for all jobs together; a rate of 0 means no limit
+        private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        private int requestsPerMinute;
+        // responses are always compressed if the server will, requests only if asked to
+        private boolean compressRequests;
+        // lets CodeScene answer with a job to poll instead of holding the connection open for long analyses
+        private boolean respondAsync;
+
+        private transient DeltaAnalysisCache resultCache;
+
         public DescriptorImpl() {
             load();
         }
 
+        public int getMaxConnectionsTotal() {
+            return maxConnectionsTotal;
+        }
+
+        public int getMaxConnectionsPerRoute() {
+            return maxConnectionsPerRoute;
+        }
+
+        public int getKeepAliveSeconds() {
+            return keepAliveSeconds;
+        }
+
+        public int getIdleConnectionTimeoutSeconds() {
+            return idleConnectionTimeoutSeconds;
+        }
+
+        public int getMaxParallelism() {
+            return maxParallelism;
+        }
+
+        public int getResultCacheSize() {
+            return resultCacheSize;
+        }
+
+        public int getResultCacheMaxAgeHours() {
+            return resultCacheMaxAgeHours;
+        }
+
+        public int getConnectTimeoutSeconds() {
+            return connectTimeoutSeconds;
+        }
+
+        public int getSocketTimeoutSeconds() {
+            return socketTimeoutSeconds;
+        }
+
+        public int getConnectionRequestTimeoutSeconds() {
+            return connectionRequestTimeoutSeconds;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public int getInitialRetryDelayMillis() {
+            return initialRetryDelayMillis;
+        }
+
+        public int getMaxRetryDelaySeconds() {
+            return maxRetryDelaySeconds;
+        }
+
+        public int getStepTimeoutMinutes() {
+            return stepTimeoutMinutes;
+        }
+
+        public int getCircuitBreakerFailureThreshold() {
+            return circuitBreakerFailureThreshold;
+        }
+
+        public int getCircuitBreakerOpenSeconds() {
+            return circuitBreakerOpenSeconds;
+        }
+
+        public String getResultWhenUnavailable() {
+            return resultWhenUnavailable;
+        }
+
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        public int getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public boolean isCompressRequests() {
+            return compressRequests;
+        }
+
+        public boolean isRespondAsync() {
+            return respondAsync;
+        }
+
+        public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+            this.maxConnectionsTotal = maxConnectionsTotal < 1 ? DEFAULT_MAX_CONNECTIONS_TOTAL : maxConnectionsTotal;
+        }
+
+        public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute < 1 ? DEFAULT_MAX_CONNECTIONS_PER_ROUTE : maxConnectionsPerRoute;
+        }
+
+        public void setKeepAliveSeconds(int keepAliveSeconds) {
+            this.keepAliveSeconds = keepAliveSeconds < 1 ? DEFAULT_KEEP_ALIVE_SECONDS : keepAliveSeconds;
+        }
+
+        public void setIdleConnectionTimeoutSeconds(int idleConnectionTimeoutSeconds) {
+            this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds < 1
+                    ? DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS
+                    : idleConnectionTimeoutSeconds;
+        }
+
+        public void setMaxParallelism(int maxParallelism) {
+            this.maxParallelism = maxParallelism < 1 ? DEFAULT_MAX_PARALLELISM : maxParallelism;
+        }
+
+        public void setResultCacheSize(int resultCacheSize) {
+            this.resultCacheSize = Math.max(resultCacheSize, 0);
+        }
+
+        public void setResultCacheMaxAgeHours(int resultCacheMaxAgeHours) {
+            this.resultCacheMaxAgeHours = resultCacheMaxAgeHours < 1 ? DEFAULT_RESULT_CACHE_MAX_AGE_HOURS : resultCacheMaxAgeHours;
+        }
+
+        public void setConnectTimeoutSeconds(int connectTimeoutSeconds) {
+            this.connectTimeoutSeconds = connectTimeoutSeconds < 1 ? DEFAULT_CONNECT_TIMEOUT_SECONDS : connectTimeoutSeconds;
+        }
+
+        public void setSocketTimeoutSeconds(int socketTimeoutSeconds) {
+            this.socketTimeoutSeconds = socketTimeoutSeconds < 1 ? DEFAULT_SOCKET_TIMEOUT_SECONDS : socketTimeoutSeconds;
+        }
+
+        public void setConnectionRequestTimeoutSeconds(int connectionRequestTimeoutSeconds) {
+            this.connectionRequestTimeoutSeconds = connectionRequestTimeoutSeconds < 1
+                    ? DEFAULT_CONNECTION_REQUEST_TIMEOUT_SECONDS
+                    : connectionRequestTimeoutSeconds;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = Math.max(maxRetries, 0);
+        }
+
+        public void setInitialRetryDelayMillis(int initialRetryDelayMillis) {
+            this.initialRetryDelayMillis = initialRetryDelayMillis < 1 ? DEFAULT_INITIAL_RETRY_DELAY_MILLIS : initialRetryDelayMillis;
+        }
+
+        public void setMaxRetryDelaySeconds(int maxRetryDelaySeconds) {
+            this.maxRetryDelaySeconds = maxRetryDelaySeconds < 1 ? DEFAULT_MAX_RETRY_DELAY_SECONDS : maxRetryDelaySeconds;
+        }
+
+        public void setStepTimeoutMinutes(int stepTimeoutMinutes) {
+            this.stepTimeoutMinutes = stepTimeoutMinutes < 1 ? DEFAULT_STEP_TIMEOUT_MINUTES : stepTimeoutMinutes;
+        }
+
+        public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+            this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold < 1
+                    ? DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD
+                    : circuitBreakerFailureThreshold;
+        }
+
+        public void setCircuitBreakerOpenSeconds(int circuitBreakerOpenSeconds) {
+            this.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds < 1
+                    ? DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS
+                    : circuitBreakerOpenSeconds;
+        }
+
+        public void setResultWhenUnavailable(String resultWhenUnavailable) {
+            this.resultWhenUnavailable = resultWhenUnavailable == null || resultWhenUnavailable.isEmpty()
+                    ? DEFAULT_RESULT_WHEN_UNAVAILABLE
+                    : resultWhenUnavailable;
+        }
+
+        public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests < 1 ? DEFAULT_MAX_CONCURRENT_REQUESTS : maxConcurrentRequests;
+        }
+
+        public void setRequestsPerMinute(int requestsPerMinute) {
+            this.requestsPerMinute = Math.max(requestsPerMinute, 0);
+        }
+
+        public void setCompressRequests(boolean compressRequests) {
+            this.compressRequests = compressRequests;
+        }
+
+        public void setRespondAsync(boolean respondAsync) {
+            this.respondAsync = respondAsync;
+        }
+
+        synchronized DeltaAnalysisCache resultCache() {
+            if (resultCache == null) {
+                resultCache = new DeltaAnalysisCache(
+                        new XmlFile(new File(Jenkins.getInstance().getRootDir(), DeltaAnalysisCache.class.getName() + ".xml")),
+                        resultCacheSize,
+                        resultCacheMaxAgeHours);
+            }
+            return resultCache;
+        }
+
+        int effectiveParallelism(int requested) {
+            return Math.min(requested, maxParallelism);
+        }
+
+        ConnectionPoolSettings connectionPoolSettings() {
+            return new ConnectionPoolSettings(
+                    maxConnectionsTotal,
+                    Math.min(maxConnectionsPerRoute, maxConnectionsTotal),
+                    keepAliveSeconds,
+                    idleConnectionTimeoutSeconds);
+        }
+
+        CodeSceneHttpClient.Lease httpClient() {
+            return CodeSceneHttpClient.lease(connectionPoolSettings());
+        }
+
+        CircuitBreaker circuitBreakerFor(URL codeSceneUrl) {
+            return CircuitBreakers.forServer(codeSceneUrl, circuitBreakerFailureThreshold,
+                    TimeUnit.SECONDS.toMillis(circuitBreakerOpenSeconds));
+        }
+
+        RequestThrottle requestThrottleFor(URL codeSceneUrl) {
+            return RequestThrottles.forServer(codeSceneUrl, maxConcurrentRequests, requestsPerMinute);
+        }
+
+        Result resultWhenUnavailable() {
+            return Result.fromString(resultWhenUnavailable);
+        }
+
+        /**
+         * @param start when the step started, the step timeout counts from there
+         */
+        RequestPolicy requestPolicy(long start) {
+            final long initialBackoff = initialRetryDelayMillis;
+            return new RequestPolicy(
+                    (int) TimeUnit.SECONDS.toMillis(connectTimeoutSeconds),
+                    (int) TimeUnit.SECONDS.toMillis(socketTimeoutSeconds),
+                    (int) TimeUnit.SECONDS.toMillis(connectionRequestTimeoutSeconds),
+                    maxRetries,
+                    initialBackoff,
+                    Math.max(initialBackoff, TimeUnit.SECONDS.toMillis(maxRetryDelaySeconds)),
+                    start + TimeUnit.MINUTES.toMillis(stepTimeoutMinutes),
+                    compressRequests,
+                    respondAsync);
+        }
+
         /**
          * This human readable name is used in the configuration screen.
          */
@@ -346,7 +1165,9 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
 
         @Override
         public boolean configure(StaplerRequest staplerRequest, JSONObject json) throws FormException {
+            staplerRequest.bindJSON(this, json);
             save();
+            resultCache().configure(resultCacheSize, resultCacheMaxAgeHours);
             return true; // indicate that everything is good so far
         }
 
@@ -396,6 +1217,118 @@ public class CodeSceneBuilder extends Builder implements SimpleBuildStep {
             }
         }
 
+        public FormValidation doCheckParallelism(@QueryParameter int parallelism) {
+            if (parallelism > maxParallelism) {
+                return FormValidation.warning("The global configuration limits this to %d parallel analyses.", maxParallelism);
+            }
+            return checkPositive(parallelism, "The number of parallel analyses");
+        }
+
+        public FormValidation doCheckMaxCommits(@QueryParameter int maxCommits) {
+            if (maxCommits < 0) {
+                return FormValidation.error("The maximum number of commits cannot be negative. Use 0 for no limit.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckMaxParallelism(@QueryParameter int maxParallelism) {
+            return checkPositive(maxParallelism, "The maximum number of parallel analyses");
+        }
+
+        public FormValidation doCheckResultCacheSize(@QueryParameter int resultCacheSize) {
+            if (resultCacheSize < 0) {
+                return FormValidation.error("The cache size cannot be negative. Use 0 to disable the cache.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckResultCacheMaxAgeHours(@QueryParameter int resultCacheMaxAgeHours) {
+            return checkPositive(resultCacheMaxAgeHours, "The maximum age of cached results");
+        }
+
+        public FormValidation doCheckMaxConnectionsTotal(@QueryParameter int maxConnectionsTotal) {
+            return checkPositive(maxConnectionsTotal, "The maximum number of connections");
+        }
+
+        public FormValidation doCheckMaxConnectionsPerRoute(@QueryParameter int maxConnectionsPerRoute,
+                                                            @QueryParameter int maxConnectionsTotal) {
+            if (maxConnectionsPerRoute > maxConnectionsTotal) {
+                return FormValidation.warning("Only %d connections will be used, the total maximum.", maxConnectionsTotal);
+            }
+            return checkPositive(maxConnectionsPerRoute, "The maximum number of connections per CodeScene server");
+        }
+
+        public FormValidation doCheckKeepAliveSeconds(@QueryParameter int keepAliveSeconds) {
+            return checkPositive(keepAliveSeconds, "Keep-alive");
+        }
+
+        public FormValidation doCheckIdleConnectionTimeoutSeconds(@QueryParameter int idleConnectionTimeoutSeconds) {
+            return checkPositive(idleConnectionTimeoutSeconds, "Idle connection timeout");
+        }
+
+        public FormValidation doCheckConnectTimeoutSeconds(@QueryParameter int connectTimeoutSeconds) {
+            return checkPositive(connectTimeoutSeconds, "The connect timeout");
+        }
+
+        public FormValidation doCheckSocketTimeoutSeconds(@QueryParameter int socketTimeoutSeconds) {
+            return checkPositive(socketTimeoutSeconds, "The response timeout");
+        }
+
+        public FormValidation doCheckConnectionRequestTimeoutSeconds(@QueryParameter int connectionRequestTimeoutSeconds) {
+            return checkPositive(connectionRequestTimeoutSeconds, "The timeout for a free connection");
+        }
+
+        public FormValidation doCheckMaxRetries(@QueryParameter int maxRetries) {
+            if (maxRetries < 0) {
+                return FormValidation.error("The number of retries cannot be negative. Use 0 to disable retries.");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckInitialRetryDelayMillis(@QueryParameter int initialRetryDelayMillis) {
+            return checkPositive(initialRetryDelayMillis, "The initial retry delay");
+        }
+
+        public FormValidation doCheckMaxRetryDelaySeconds(@QueryParameter int maxRetryDelaySeconds) {
+            return checkPositive(maxRetryDelaySeconds, "The maximum retry delay");
+        }
+
+        public FormValidation doCheckStepTimeoutMinutes(@QueryParameter int stepTimeoutMinutes) {
+            return checkPositive(stepTimeoutMinutes, "The step timeout");
+        }
+
+        public FormValidation doCheckCircuitBreakerFailureThreshold(@QueryParameter int circuitBreakerFailureThreshold) {
+            return checkPositive(circuitBreakerFailureThreshold, "The number of failures");
+        }
+
+        public FormValidation doCheckCircuitBreakerOpenSeconds(@QueryParameter int circuitBreakerOpenSeconds) {
+            return checkPositive(circuitBreakerOpenSeconds, "The pause after failures");
+        }
+
+        public ListBoxModel doFillCommitLimitStrategyItems() {
+            final ListBoxModel items = new ListBoxModel();
+            for (CommitLimitStrategy strategy : CommitLimitStrategy.values()) {
+                items.add(strategy.getDisplayName(), strategy.name());
+            }
+            return items;
+        }
+
+        public ListBoxModel doFillResultWhenUnavailableItems() {
+            final ListBoxModel items = new ListBoxModel();
+            items.add("Fail the build", Result.FAILURE.toString());
+            items.add("Mark the build as unstable", Result.UNSTABLE.toString());
+            items.add("Leave the build result as it is", Result.SUCCESS.toString());
+            return items;
+        }
+
+        private static FormValidation checkPositive(int value, String what) {
+            if (value < 1) {
+                return FormValidation.error("%s must be a positive number. The value %d is invalid.", what, value);
+            } else {
+                return FormValidation.ok();
+            }
+        }
+
         public FormValidation doCheckCouplingThresholdPercent(@QueryParameter int couplingThresholdPercent) {
             if (couplingThresholdPercent < 1 || couplingThresholdPercent > 100) {
                 return FormValidation.error("Temporal coupling threshold is percentage and must be a number between 1 and 100." +
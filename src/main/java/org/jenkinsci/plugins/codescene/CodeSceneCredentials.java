@@ -0,0 +1,104 @@
+package org.jenkinsci.plugins.codescene;
+
+import com.cloudbees.plugins.credentials.CredentialsMatchers;
+import com.cloudbees.plugins.credentials.CredentialsProvider;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.UsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainRequirement;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.codescene.Domain.CodeSceneUser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The CodeScene users of the credentials used by jobs, so that a build doesn't search all credentials of
+ * Jenkins for its id. The users are kept in memory only, and dropped whenever the global credentials are saved.
+ * As other credentials providers don't tell when their credentials change, a user is also looked up again
+ * after a few minutes.
+ */
+class CodeSceneCredentials {
+    static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final CodeSceneCredentials INSTANCE = new CodeSceneCredentials();
+
+    private final ConcurrentMap<String, Entry> users = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    CodeSceneCredentials() {
+    }
+
+    static CodeSceneCredentials get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the user of the credentials, or null if there are no username and password credentials with the id
+     */
+    CodeSceneUser user(String credentialsId) {
+        final Entry cached = users.get(credentialsId);
+        if (cached != null && now() - cached.resolvedAt < MAX_AGE_MILLIS) {
+            return cached.user;
+        }
+
+        // a lookup racing with a change of the credentials must not put the old user back
+        final long before = generation.get();
+        final CodeSceneUser user = resolve(credentialsId);
+        if (user == null) {
+            users.remove(credentialsId);
+            return null;
+        }
+        if (generation.get() == before) {
+            users.put(credentialsId, new Entry(user, now()));
+        }
+        return user;
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        users.clear();
+    }
+
+    protected CodeSceneUser resolve(String credentialsId) {
+        final List<UsernamePasswordCredentials> all = CredentialsProvider.lookupCredentials(UsernamePasswordCredentials.class,
+                Jenkins.getInstance(), ACL.SYSTEM, Collections.<DomainRequirement>emptyList());
+        final UsernamePasswordCredentials credentials = CredentialsMatchers.firstOrNull(all, CredentialsMatchers.withId(credentialsId));
+        if (credentials == null) {
+            return null;
+        }
+        return new CodeSceneUser(credentials.getUsername(), credentials.getPassword().getPlainText());
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private static final class Entry {
+        private final CodeSceneUser user;
+        private final long resolvedAt;
+
+        Entry(CodeSceneUser user, long resolvedAt) {
+            this.user = user;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+
+    @Extension
+    public static final class Invalidation extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SystemCredentialsProvider) {
+                get().invalidate();
+            }
+        }
+    }
+}
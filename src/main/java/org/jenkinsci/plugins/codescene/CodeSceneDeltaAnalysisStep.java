@@ -0,0 +1,306 @@
+package org.jenkinsci.plugins.codescene;
+
+import com.google.inject.Inject;
+import hudson.AbortException;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.AncestorInPath;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+import java.util.concurrent.Future;
+
+/**
+ * Pipeline step that finds the commits to analyse, like {@link CodeSceneBuilder} does, but doesn't send them to
+ * CodeScene. It runs inside {@code node}, since it needs the workspace, and returns the {@link PendingDeltaAnalyses}
+ * for {@link CodeSceneAwaitDeltaAnalysisStep}, which runs outside of {@code node}. The build then doesn't hold an
+ * executor while it waits for a slow CodeScene server.
+ */
+public class CodeSceneDeltaAnalysisStep extends AbstractStepImpl {
+    private final String credentialsId;
+    private final String deltaAnalysisUrl;
+    private final String repository;
+
+    private boolean analyzeLatestIndividually;
+    private boolean analyzeBranchDiff;
+    private String baseRevision;
+    private boolean markBuildAsUnstable;
+    private int riskThreshold;
+    private int couplingThresholdPercent;
+    private int parallelism;
+    private boolean useGitCommandLine;
+    private boolean analyzeLargestCommitsFirst;
+    private boolean stopAtRiskThreshold;
+    private int maxCommits;
+    private CommitLimitStrategy commitLimitStrategy;
+    private boolean runOnAgent;
+
+    @DataBoundConstructor
+    public CodeSceneDeltaAnalysisStep(String credentialsId, String deltaAnalysisUrl, String repository) {
+        this.credentialsId = credentialsId;
+        this.deltaAnalysisUrl = deltaAnalysisUrl;
+        this.repository = repository;
+
+        // start out with the defaults of the build step
+        final CodeSceneBuilder defaults = new CodeSceneBuilder(credentialsId, deltaAnalysisUrl, repository);
+        this.riskThreshold = defaults.getRiskThreshold();
+        this.couplingThresholdPercent = defaults.getCouplingThresholdPercent();
+        this.parallelism = defaults.getParallelism();
+        this.maxCommits = defaults.getMaxCommits();
+        this.commitLimitStrategy = defaults.getCommitLimitStrategy();
+    }
+
+    public String getCredentialsId() {
+        return credentialsId;
+    }
+
+    public String getDeltaAnalysisUrl() {
+        return deltaAnalysisUrl;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public boolean isAnalyzeLatestIndividually() {
+        return analyzeLatestIndividually;
+    }
+
+    public boolean isAnalyzeBranchDiff() {
+        return analyzeBranchDiff;
+    }
+
+    public String getBaseRevision() {
+        return baseRevision;
+    }
+
+    public boolean isMarkBuildAsUnstable() {
+        return markBuildAsUnstable;
+    }
+
+    public int getRiskThreshold() {
+        return riskThreshold;
+    }
+
+    public int getCouplingThresholdPercent() {
+        return couplingThresholdPercent;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isUseGitCommandLine() {
+        return useGitCommandLine;
+    }
+
+    public boolean isAnalyzeLargestCommitsFirst() {
+        return analyzeLargestCommitsFirst;
+    }
+
+    public boolean isStopAtRiskThreshold() {
+        return stopAtRiskThreshold;
+    }
+
+    public int getMaxCommits() {
+        return maxCommits;
+    }
+
+    public CommitLimitStrategy getCommitLimitStrategy() {
+        return commitLimitStrategy;
+    }
+
+    public boolean isRunOnAgent() {
+        return runOnAgent;
+    }
+
+    @DataBoundSetter
+    public void setAnalyzeLatestIndividually(boolean analyzeLatestIndividually) {
+        this.analyzeLatestIndividually = analyzeLatestIndividually;
+    }
+
+    @DataBoundSetter
+    public void setAnalyzeBranchDiff(boolean analyzeBranchDiff) {
+        this.analyzeBranchDiff = analyzeBranchDiff;
+    }
+
+    @DataBoundSetter
+    public void setBaseRevision(String baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    @DataBoundSetter
+    public void setMarkBuildAsUnstable(boolean markBuildAsUnstable) {
+        this.markBuildAsUnstable = markBuildAsUnstable;
+    }
+
+    @DataBoundSetter
+    public void setRiskThreshold(int riskThreshold) {
+        this.riskThreshold = riskThreshold;
+    }
+
+    @DataBoundSetter
+    public void setCouplingThresholdPercent(int couplingThresholdPercent) {
+        this.couplingThresholdPercent = couplingThresholdPercent;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    @DataBoundSetter
+    public void setUseGitCommandLine(boolean useGitCommandLine) {
+        this.useGitCommandLine = useGitCommandLine;
+    }
+
+    @DataBoundSetter
+    public void setAnalyzeLargestCommitsFirst(boolean analyzeLargestCommitsFirst) {
+        this.analyzeLargestCommitsFirst = analyzeLargestCommitsFirst;
+    }
+
+    @DataBoundSetter
+    public void setStopAtRiskThreshold(boolean stopAtRiskThreshold) {
+        this.stopAtRiskThreshold = stopAtRiskThreshold;
+    }
+
+    @DataBoundSetter
+    public void setMaxCommits(int maxCommits) {
+        this.maxCommits = maxCommits;
+    }
+
+    @DataBoundSetter
+    public void setCommitLimitStrategy(CommitLimitStrategy commitLimitStrategy) {
+        this.commitLimitStrategy = commitLimitStrategy;
+    }
+
+    @DataBoundSetter
+    public void setRunOnAgent(boolean runOnAgent) {
+        this.runOnAgent = runOnAgent;
+    }
+
+    /**
+     * The build step with the same settings, which knows how to run the analyses.
+     * Its setters apply the same defaults and bounds as for freestyle jobs.
+     */
+    CodeSceneBuilder toBuilder() {
+        final CodeSceneBuilder builder = new CodeSceneBuilder(credentialsId, deltaAnalysisUrl, repository);
+        builder.setAnalyzeLatestIndividually(analyzeLatestIndividually);
+        builder.setAnalyzeBranchDiff(analyzeBranchDiff);
+        builder.setBaseRevision(baseRevision);
+        builder.setMarkBuildAsUnstable(markBuildAsUnstable);
+        builder.setRiskThreshold(riskThreshold);
+        builder.setCouplingThresholdPercent(couplingThresholdPercent);
+        builder.setParallelism(parallelism);
+        builder.setUseGitCommandLine(useGitCommandLine);
+        builder.setAnalyzeLargestCommitsFirst(analyzeLargestCommitsFirst);
+        builder.setStopAtRiskThreshold(stopAtRiskThreshold);
+        builder.setMaxCommits(maxCommits);
+        builder.setCommitLimitStrategy(commitLimitStrategy);
+        builder.setRunOnAgent(runOnAgent);
+        return builder;
+    }
+
+    public static final class Execution extends AbstractStepExecutionImpl {
+        private static final long serialVersionUID = 1L;
+
+        @Inject
+        private transient CodeSceneDeltaAnalysisStep step;
+        @StepContextParameter
+        private transient Run<?, ?> run;
+        @StepContextParameter
+        private transient FilePath workspace;
+        @StepContextParameter
+        private transient Launcher launcher;
+        @StepContextParameter
+        private transient TaskListener listener;
+
+        private transient volatile Future<?> resolving;
+
+        @Override
+        public boolean start() throws Exception {
+            final CodeSceneBuilder builder = step.toBuilder();
+            if (!builder.isAnalyzeLatestIndividually() && !builder.isAnalyzeBranchDiff()) {
+                getContext().onSuccess(new PendingDeltaAnalyses(builder, CodeSceneBuilder.ResolvedCommits.NOTHING));
+                return true;
+            }
+            if (builder.isRunOnAgent()) {
+                listener.getLogger().println("The delta analyses are sent to CodeScene from the controller, since codesceneAwaitDeltaAnalysis runs outside of node.");
+            }
+
+            // looking up the commits in the workspace may take a while too, so it happens off the Pipeline thread
+            resolving = Computer.threadPoolForRemoting.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        getContext().onSuccess(new PendingDeltaAnalyses(builder, builder.resolve(run, workspace, launcher, listener)));
+                    } catch (InterruptedException e) {
+                        getContext().onFailure(new AbortException("The search for the commits to analyse was interrupted."));
+                    } catch (Throwable t) {
+                        getContext().onFailure(t);
+                    }
+                }
+            });
+            return false;
+        }
+
+        @Override
+        public void stop(Throwable cause) throws Exception {
+            final Future<?> running = resolving;
+            if (running != null) {
+                running.cancel(true);
+            }
+            getContext().onFailure(cause);
+        }
+
+        @Override
+        public void onResume() {
+            getContext().onFailure(new AbortException(
+                    "The search for the commits to analyse was interrupted by a restart of Jenkins. Run the build again to analyse the commits."));
+        }
+    }
+
+    @Extension(optional = true)
+    public static final class DescriptorImpl extends AbstractStepDescriptorImpl {
+        public DescriptorImpl() {
+            super(Execution.class);
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "codesceneDeltaAnalysis";
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Find the Commits for a CodeScene Delta Analysis";
+        }
+
+        public Class<CodeSceneBuilder> getBuilderClass() {
+            return CodeSceneBuilder.class;
+        }
+
+        public ListBoxModel doFillCredentialsIdItems(@AncestorInPath Jenkins context, @QueryParameter String credentialsId) {
+            return builderDescriptor().doFillCredentialsIdItems(context, credentialsId);
+        }
+
+        public ListBoxModel doFillCommitLimitStrategyItems() {
+            return builderDescriptor().doFillCommitLimitStrategyItems();
+        }
+
+        private static CodeSceneBuilder.DescriptorImpl builderDescriptor() {
+            return Jenkins.getInstance().getDescriptorByType(CodeSceneBuilder.DescriptorImpl.class);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.init.Terminator;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.jenkinsci.plugins.codescene.Domain.ConnectionPoolSettings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The connection-pooled HTTP client shared by all delta analyses in this JVM.
+ * Reusing it lets consecutive requests to CodeScene skip the TCP and TLS handshakes.
+ * <p>
+ * The client is {@link #lease(ConnectionPoolSettings) leased} for the requests of an analysis. When the pool settings
+ * change, the next lease gets a new client, and the old one is closed once the last analysis using it is done.
+ */
+public final class CodeSceneHttpClient {
+    private static final Logger LOGGER = Logger.getLogger(CodeSceneHttpClient.class.getName());
+
+    private static Pool current;
+
+    private CodeSceneHttpClient() {
+    }
+
+    /**
+     * Leases the shared client, creating a new one when the pool settings have changed since the last call.
+     * The lease has to be {@link Lease#close() closed} once the requests are done.
+     */
+    public static synchronized Lease lease(ConnectionPoolSettings settings) {
+        if (current == null || !settings.equals(current.settings)) {
+            final Pool previous = current;
+            current = new Pool(create(settings), settings);
+            if (previous != null) {
+                previous.retire();
+            }
+        }
+        return new Lease(current);
+    }
+
+    @Terminator
+    public static synchronized void shutdown() {
+        if (current != null) {
+            closeQuietly(current.client);
+            current = null;
+        }
+    }
+
+    private static CloseableHttpClient create(ConnectionPoolSettings settings) {
+        final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(settings.maxConnectionsTotal());
+        connectionManager.setDefaultMaxPerRoute(settings.maxConnectionsPerRoute());
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(new CappedKeepAliveStrategy(TimeUnit.SECONDS.toMillis(settings.keepAliveSeconds())))
+                .evictExpiredConnections()
+                .evictIdleConnections(settings.idleConnectionTimeoutSeconds(), TimeUnit.SECONDS)
+                // DeltaAnalysis negotiates and decompresses gzip itself, so that it sees the bytes saved
+                .disableContentCompression()
+                .build();
+    }
+
+    private static void closeQuietly(CloseableHttpClient httpClient) {
+        if (httpClient == null) {
+            return;
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to close the CodeScene HTTP client", e);
+        }
+    }
+
+    private static final class Pool {
+        private final CloseableHttpClient client;
+        private final ConnectionPoolSettings settings;
+        private int leases;
+        private boolean retired;
+
+        Pool(CloseableHttpClient client, ConnectionPoolSettings settings) {
+            this.client = client;
+            this.settings = settings;
+        }
+
+        // all under the class lock
+        void retire() {
+            retired = true;
+            closeIfUnused();
+        }
+
+        void closeIfUnused() {
+            if (retired && leases == 0) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * The use of the shared client by one analysis, which keeps the client open until it is closed.
+     */
+    public static final class Lease implements Closeable {
+        private final Pool pool;
+        private boolean closed;
+
+        private Lease(Pool pool) {
+            this.pool = pool;
+            pool.leases++;
+        }
+
+        public CloseableHttpClient client() {
+            return pool.client;
+        }
+
+        @Override
+        public void close() {
+            synchronized (CodeSceneHttpClient.class) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pool.leases--;
+                pool.closeIfUnused();
+            }
+        }
+    }
+
+    /**
+     * Honours the keep-alive the server asks for, but never keeps a connection longer than configured.
+     */
+    private static final class CappedKeepAliveStrategy extends DefaultConnectionKeepAliveStrategy {
+        private final long maxKeepAliveMillis;
+
+        CappedKeepAliveStrategy(long maxKeepAliveMillis) {
+            this.maxKeepAliveMillis = maxKeepAliveMillis;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            final long requested = super.getKeepAliveDuration(response, context);
+            return requested > 0 ? Math.min(requested, maxKeepAliveMillis) : maxKeepAliveMillis;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Drops what is kept in memory for the files in a job directory once the job is deleted or moves, e.g. when it's
+ * renamed. A job with a new name gets a new directory, which is read afresh the next time it's needed.
+ */
+@Extension
+public class CodeSceneItemListener extends ItemListener {
+    @Override
+    public void onDeleted(Item item) {
+        final File dir = item.getRootDir();
+        RiskTrendIndex.forgetFilesIn(dir);
+        AnalysisCheckpoints.forgetFilesIn(dir);
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        // the old directory of the item, and of any jobs in it if it's a folder, is gone by now
+        RiskTrendIndex.forgetMissingDirectories();
+        AnalysisCheckpoints.forgetMissingDirectories();
+    }
+
+    /**
+     * Removes the files in the directory or any directory below it.
+     */
+    static void forgetFilesIn(Map<File, ?> byFile, File dir) {
+        final String prefix = dir.getAbsolutePath() + File.separator;
+        for (Iterator<File> files = byFile.keySet().iterator(); files.hasNext(); ) {
+            if (files.next().getAbsolutePath().startsWith(prefix)) {
+                files.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the files whose directory no longer exists.
+     */
+    static void forgetMissingDirectories(Map<File, ?> byFile) {
+        for (Iterator<File> files = byFile.keySet().iterator(); files.hasNext(); ) {
+            if (!files.next().getParentFile().isDirectory()) {
+                files.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import jenkins.model.Jenkins;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Shows how the CodeScene servers used by the delta analyses are doing, under <i>Manage Jenkins</i>.
+ */
+@Extension
+public class CodeSceneManagementLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/codescene/images/codescene.png";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "codescene";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "CodeScene";
+    }
+
+    @Override
+    public String getDescription() {
+        return "See which CodeScene servers delta analyses are currently sent to, and which are skipped after repeated failures. " +
+                "How many analyses wait for their turn, and metrics on the time and data the analyses take.";
+    }
+
+    public List<CircuitBreaker> getCircuitBreakers() {
+        return CircuitBreakers.all();
+    }
+
+    public List<RequestThrottle> getRequestThrottles() {
+        return RequestThrottles.all();
+    }
+
+    /**
+     * The delta analysis metrics, for Prometheus to scrape.
+     */
+    public void doMetrics(StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        rsp.getWriter().write(DeltaAnalysisMetrics.get().asPrometheusText());
+    }
+
+    @RequirePOST
+    public void doReset(@QueryParameter String server, StaplerResponse rsp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+        final CircuitBreaker breaker = CircuitBreakers.get(server);
+        if (breaker != null) {
+            breaker.reset();
+        }
+        rsp.sendRedirect(".");
+    }
+}
@@ -0,0 +1,168 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.Extension;
+import hudson.model.Action;
+import hudson.model.Job;
+import hudson.util.DataSetBuilder;
+import hudson.util.Graph;
+import hudson.util.ShiftedCategoryAxis;
+import jenkins.model.TransientActionFactory;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.CategoryAxis;
+import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.NumberAxis;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.renderer.category.LineAndShapeRenderer;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The risk of the delta analyses over the builds of a job: a graph on the job page, and the data behind it as JSON.
+ * Both are served from the {@link RiskTrendIndex} of the job.
+ */
+public class CodeSceneRiskTrendAction implements Action {
+    private static final int DEFAULT_GRAPH_BUILDS = 100;
+
+    private final Job<?, ?> job;
+
+    CodeSceneRiskTrendAction(Job<?, ?> job) {
+        this.job = job;
+    }
+
+    public Job<?, ?> getJob() {
+        return job;
+    }
+
+    @Override
+    public String getIconFileName() {
+        return "/plugin/codescene/images/codescene.png";
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "CodeScene Risk Trend";
+    }
+
+    @Override
+    public String getUrlName() {
+        return "codescene-trend";
+    }
+
+    /**
+     * The max risk and the number of deltas at the risk threshold of the latest builds.
+     *
+     * @param builds how many of the latest builds to show, 100 by default
+     */
+    public void doGraph(StaplerRequest req, StaplerResponse rsp, @QueryParameter int builds) throws IOException {
+        final RiskTrendIndex index = RiskTrendIndex.of(job);
+        final List<RiskTrendIndex.BuildRisk> all = index.builds();
+        final List<RiskTrendIndex.BuildRisk> shown = latest(all, builds > 0 ? builds : DEFAULT_GRAPH_BUILDS);
+
+        new Graph(index.file().lastModified(), 500, 200) {
+            @Override
+            protected JFreeChart createGraph() {
+                return riskChart(shown);
+            }
+        }.doPng(req, rsp);
+    }
+
+    /**
+     * The summaries of all builds, oldest first, or of the latest builds only.
+     *
+     * @param limit how many of the latest builds to include, all if not positive
+     */
+    public void doJson(StaplerResponse rsp, @QueryParameter int limit) throws IOException {
+        final List<RiskTrendIndex.BuildRisk> all = RiskTrendIndex.of(job).builds();
+        final List<RiskTrendIndex.BuildRisk> builds = limit > 0 ? latest(all, limit) : all;
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        try (JsonGenerator json = Json.createGenerator(rsp.getWriter())) {
+            json.writeStartObject();
+            json.writeStartArray("builds");
+            for (RiskTrendIndex.BuildRisk build : builds) {
+                json.writeStartObject();
+                json.write("number", build.getNumber());
+                json.write("timestamp", build.getTimestamp());
+                json.write("maxRisk", build.getMaxRisk());
+                json.write("thresholdHits", build.getThresholdHits());
+                json.writeStartObject("warnings");
+                for (Map.Entry<String, Integer> warning : build.getWarnings().entrySet()) {
+                    json.write(warning.getKey(), warning.getValue());
+                }
+                json.writeEnd();
+                json.writeEnd();
+            }
+            json.writeEnd();
+            json.writeEnd();
+        }
+    }
+
+    private static List<RiskTrendIndex.BuildRisk> latest(List<RiskTrendIndex.BuildRisk> builds, int count) {
+        return builds.subList(Math.max(0, builds.size() - count), builds.size());
+    }
+
+    private static JFreeChart riskChart(List<RiskTrendIndex.BuildRisk> builds) {
+        final DataSetBuilder<String, Integer> data = new DataSetBuilder<>();
+        for (RiskTrendIndex.BuildRisk build : builds) {
+            data.add(build.getMaxRisk(), "Max risk", build.getNumber());
+            data.add(build.getThresholdHits(), "Deltas at the risk threshold", build.getNumber());
+        }
+
+        final JFreeChart chart = ChartFactory.createLineChart(null, null, "Risk", data.build(),
+                PlotOrientation.VERTICAL, true, true, false);
+        chart.setBackgroundPaint(Color.WHITE);
+
+        final CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setOutlinePaint(null);
+        plot.setRangeGridlinesVisible(true);
+        plot.setRangeGridlinePaint(Color.BLACK);
+
+        final CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+        domainAxis.setLowerMargin(0.0);
+        domainAxis.setUpperMargin(0.0);
+        domainAxis.setCategoryMargin(0.0);
+        plot.setDomainAxis(domainAxis);
+
+        final NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+        rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+        rangeAxis.setLowerBound(0);
+
+        final LineAndShapeRenderer renderer = (LineAndShapeRenderer) plot.getRenderer();
+        renderer.setSeriesPaint(0, new Color(0xEF, 0x29, 0x29));
+        renderer.setSeriesPaint(1, new Color(0x72, 0x9F, 0xCF));
+        return chart;
+    }
+
+    /**
+     * Adds the trend to every job with at least one analysed build.
+     */
+    @Extension
+    public static final class Factory extends TransientActionFactory<Job> {
+        @Override
+        public Class<Job> type() {
+            return Job.class;
+        }
+
+        @Override
+        public Collection<? extends Action> createFor(Job target) {
+            if (!RiskTrendIndex.fileOf(target).exists()) {
+                return Collections.emptySet();
+            }
+            return Collections.singleton(new CodeSceneRiskTrendAction(target));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * The delta analysis wasn't even attempted, since the {@link CircuitBreaker} for the CodeScene server is open.
+ */
+public class CodeSceneUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public CodeSceneUnavailableException(String message) {
+        super(message);
+    }
+
+    static CodeSceneUnavailableException of(CircuitBreaker breaker) {
+        final Date retryAt = breaker.getRetryAt();
+        if (retryAt == null) {
+            // half open: another build's probe request is finding out whether the server is back
+            return new CodeSceneUnavailableException(String.format(
+                    "CodeScene at %s failed %d time(s) in a row, so no delta analyses are sent to it until a probe request succeeds.",
+                    breaker.getServer(), breaker.getConsecutiveFailures()));
+        }
+        return new CodeSceneUnavailableException(String.format(
+                "CodeScene at %s failed %d time(s) in a row, so no delta analyses are sent to it until %s.",
+                breaker.getServer(), breaker.getConsecutiveFailures(), retryAt));
+    }
+}
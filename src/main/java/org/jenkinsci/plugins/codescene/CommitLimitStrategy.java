@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What to do when a build has more commits to analyse individually than a job allows, e.g. after a force-push or
+ * after a long series of broken builds. Either way CodeScene gets a bounded number of requests from the build.
+ */
+public enum CommitLimitStrategy {
+    NEWEST("Analyse the newest commits only") {
+        @Override
+        <T> List<T> limit(List<T> newestFirst, int maxCommits) {
+            return new ArrayList<>(newestFirst.subList(0, maxCommits));
+        }
+    },
+    SAMPLE("Analyse a sample spread evenly over all commits") {
+        @Override
+        <T> List<T> limit(List<T> newestFirst, int maxCommits) {
+            // always includes the newest commit, and the rest at even steps towards the oldest
+            final List<T> sample = new ArrayList<>(maxCommits);
+            for (int i = 0; i < maxCommits; i++) {
+                sample.add(newestFirst.get((int) ((long) i * newestFirst.size() / maxCommits)));
+            }
+            return sample;
+        }
+    },
+    BRANCH_DIFF("Analyse all commits together, as one delta") {
+        @Override
+        <T> List<T> limit(List<T> newestFirst, int maxCommits) {
+            return new ArrayList<>(newestFirst);
+        }
+    };
+
+    private final String displayName;
+
+    CommitLimitStrategy(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @param newestFirst more than {@code maxCommits} commits
+     * @return the commits to analyse, newest first
+     */
+    abstract <T> List<T> limit(List<T> newestFirst, int maxCommits);
+}
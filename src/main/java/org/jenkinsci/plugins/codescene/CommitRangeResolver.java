@@ -0,0 +1,244 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.console.LineTransformationOutputStream;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the commits reachable from one revision but not from another, newest first - the same as
+ * {@code git log from..to}.
+ * By default the revision graph is walked in-process with JGit on the node that holds the workspace. That avoids
+ * forking a git process per build and never buffers more than the SHAs themselves. The git command line is still
+ * available, both on request and as a fallback when the workspace can't be read by JGit.
+ * <p>
+ * On request the walk also counts the files each commit touches, a cheap local estimate of how risky the commit is.
+ */
+public class CommitRangeResolver {
+    private static final Charset UTF8 = Charset.forName("UTF8");
+
+    private final boolean useGitCommandLine;
+
+    public CommitRangeResolver(boolean useGitCommandLine) {
+        this.useGitCommandLine = useGitCommandLine;
+    }
+
+    /**
+     * @param maxCommits stop after this many commits, 0 or less means no limit
+     */
+    public List<String> resolve(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener,
+                                String fromRevision, String toRevision, int maxCommits) throws IOException, InterruptedException {
+        final List<Revision> revisions = resolveRevisions(build, workspace, launcher, listener, fromRevision, toRevision, maxCommits, false);
+        final List<String> names = new ArrayList<>(revisions.size());
+        for (Revision revision : revisions) {
+            names.add(revision.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Like {@link #resolve(Run, FilePath, Launcher, TaskListener, String, String, int)}, and optionally counts the
+     * files touched by each commit on the way. Merge commits count as touching no files.
+     */
+    public List<Revision> resolveRevisions(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener,
+                                           String fromRevision, String toRevision, int maxCommits,
+                                           boolean countFilesTouched) throws IOException, InterruptedException {
+        if (!useGitCommandLine) {
+            try {
+                return workspace.act(new RevWalkCallable(fromRevision, toRevision, maxCommits, countFilesTouched));
+            } catch (IOException e) {
+                listener.getLogger().format("Could not walk the commits %s..%s in-process (%s), falling back to git log.%n",
+                        fromRevision, toRevision, e.getMessage());
+            }
+        }
+        return gitLog(build, workspace, launcher, listener, fromRevision, toRevision, maxCommits, countFilesTouched);
+    }
+
+    private static List<Revision> gitLog(Run<?, ?> build, FilePath workspace, Launcher launcher, TaskListener listener,
+                                         String fromRevision, String toRevision, int maxCommits,
+                                         boolean countFilesTouched) throws IOException, InterruptedException {
+        final String limit = maxCommits > 0 ? String.format(" --max-count=%d", maxCommits) : "";
+        // a NUL can't be part of a file name, so it tells the commits apart from the files they touch
+        final String format = countFilesTouched ? "--pretty='format:%%x00%%H' --name-only" : "--pretty='%%H'";
+        final RevisionCollector out = new RevisionCollector();
+
+        launcher.launch()
+                .cmdAsSingleString(String.format("git log " + format + "%s %s..%s", limit, fromRevision, toRevision))
+                .pwd(workspace)
+                .envs(build.getEnvironment(listener))
+                .stdout(out)
+                .join();
+
+        out.close();
+        return out.revisions;
+    }
+
+    /**
+     * Picks up the SHAs line by line as git writes them, instead of buffering the whole output.
+     * Lines between two commits that start with a NUL are the files the first of them touches.
+     */
+    private static final class RevisionCollector extends LineTransformationOutputStream {
+        private final List<Revision> revisions = new ArrayList<>();
+        private String current;
+        private int filesTouched;
+
+        @Override
+        protected void eol(byte[] b, int len) {
+            if (len > 0 && b[0] == 0) {
+                addCurrent();
+                current = new String(b, 1, len - 1, UTF8).trim();
+                return;
+            }
+            final String trimmed = new String(b, 0, len, UTF8).trim();
+            if (trimmed.isEmpty()) {
+                return;
+            }
+            if (current != null) {
+                filesTouched++;
+            } else {
+                revisions.add(new Revision(trimmed, 0));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            addCurrent();
+        }
+
+        private void addCurrent() {
+            if (current != null) {
+                revisions.add(new Revision(current, filesTouched));
+                current = null;
+                filesTouched = 0;
+            }
+        }
+    }
+
+    /**
+     * A commit of the range, and how many files it touches if they were counted.
+     */
+    public static final class Revision implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int filesTouched;
+
+        public Revision(String name, int filesTouched) {
+            this.name = name;
+            this.filesTouched = filesTouched;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getFilesTouched() {
+            return filesTouched;
+        }
+    }
+
+    /**
+     * Runs on the node that holds the workspace, so only the SHAs travel back to the controller.
+     */
+    private static final class RevWalkCallable extends MasterToSlaveFileCallable<List<Revision>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String fromRevision;
+        private final String toRevision;
+        private final int maxCommits;
+        private final boolean countFilesTouched;
+
+        RevWalkCallable(String fromRevision, String toRevision, int maxCommits, boolean countFilesTouched) {
+            this.fromRevision = fromRevision;
+            this.toRevision = toRevision;
+            this.maxCommits = maxCommits;
+            this.countFilesTouched = countFilesTouched;
+        }
+
+        @Override
+        public List<Revision> invoke(File workspace, VirtualChannel channel) throws IOException {
+            try {
+                return walk(workspace);
+            } catch (RuntimeException e) {
+                // JGit reports some problems, like a revision it can't parse, unchecked; git log may still cope
+                throw new IOException(e.toString(), e);
+            }
+        }
+
+        private List<Revision> walk(File workspace) throws IOException {
+            final FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(workspace);
+            if (builder.getGitDir() == null) {
+                throw new IOException("No git repository found in " + workspace);
+            }
+
+            try (Repository repository = builder.setMustExist(true).build();
+                 RevWalk walk = new RevWalk(repository)) {
+                walk.setRetainBody(false);
+                walk.markStart(walk.parseCommit(resolve(repository, toRevision)));
+                walk.markUninteresting(walk.parseCommit(resolve(repository, fromRevision)));
+
+                final List<Revision> revisions = new ArrayList<>();
+                for (RevCommit commit : walk) {
+                    final int filesTouched = countFilesTouched ? filesTouched(repository, walk, commit) : 0;
+                    revisions.add(new Revision(commit.name(), filesTouched));
+                    if (maxCommits > 0 && revisions.size() >= maxCommits) {
+                        break;
+                    }
+                }
+                return revisions;
+            }
+        }
+
+        /**
+         * Compares the trees only, the contents of the files are never read.
+         */
+        private static int filesTouched(Repository repository, RevWalk walk, RevCommit commit) throws IOException {
+            if (commit.getParentCount() > 1) {
+                return 0;
+            }
+            try (TreeWalk tree = new TreeWalk(repository)) {
+                tree.setRecursive(true);
+                tree.setFilter(TreeFilter.ANY_DIFF);
+                if (commit.getParentCount() == 0) {
+                    tree.addTree(new EmptyTreeIterator());
+                } else {
+                    tree.addTree(walk.parseCommit(commit.getParent(0)).getTree());
+                }
+                tree.addTree(commit.getTree());
+
+                int files = 0;
+                while (tree.next()) {
+                    files++;
+                }
+                return files;
+            }
+        }
+
+        private static ObjectId resolve(Repository repository, String revision) throws IOException {
+            final ObjectId id = repository.resolve(revision);
+            if (id == null) {
+                throw new IOException("Unknown revision " + revision);
+            }
+            return id;
+        }
+    }
+}
@@ -1,68 +1,516 @@
 package org.jenkinsci.plugins.codescene;
 
+import hudson.model.TaskListener;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.http.*;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.jenkinsci.plugins.codescene.Domain.*;
 
-import javax.json.Json;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class DeltaAnalysis {
+    private static final DeltaAnalysisMetrics METRICS = DeltaAnalysisMetrics.get();
 
     private final Configuration config;
+    private final CloseableHttpClient httpClient;
+    private final RequestPolicy policy;
+    private final CircuitBreaker breaker;
+    private final RequestThrottle throttle;
+    private final String job;
+    private final TaskListener listener;
+    // bodies sent and received, as JSON and as they went over the wire
+    private final AtomicLong plainBytes = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
 
-    public DeltaAnalysis(Configuration config) {
+    /**
+     * @param httpClient a shared, pooled client - the analysis never closes it
+     * @param policy the timeouts, deadline and retries that apply to each request
+     * @param breaker guards the CodeScene server of the configuration, and learns from every attempt
+     * @param listener where failed attempts are reported before they are retried
+     */
+    public DeltaAnalysis(Configuration config, CloseableHttpClient httpClient, RequestPolicy policy, CircuitBreaker breaker,
+                         TaskListener listener) {
+        this(config, httpClient, policy, breaker, null, null, listener);
+    }
+
+    /**
+     * @param throttle limits the requests of all jobs to the CodeScene server, or null to send them right away
+     * @param job the job sending the requests, which takes turns with the other jobs waiting for the throttle
+     */
+    public DeltaAnalysis(Configuration config, CloseableHttpClient httpClient, RequestPolicy policy, CircuitBreaker breaker,
+                         RequestThrottle throttle, String job, TaskListener listener) {
         this.config = config;
+        this.httpClient = httpClient;
+        this.policy = policy;
+        this.breaker = breaker;
+        this.throttle = throttle;
+        this.job = job;
+        this.listener = listener;
+    }
+
+    public DeltaAnalysisResult runOn(final Commits commits) throws IOException {
+        return runOnUnless(commits, new AtomicBoolean());
+    }
+
+    /**
+     * Like {@link #runOn(Commits)}, but sends no request once {@code stop} is set, e.g. by another thread that
+     * already knows the outcome of the build. It's checked each time the throttle lets a request through, since the
+     * request may have waited there for a while.
+     *
+     * @return the result, or null if the analysis was stopped before it got one
+     */
+    public DeltaAnalysisResult runOnUnless(final Commits commits, AtomicBoolean stop) throws IOException {
+        try {
+            return runOn(commits, stop, HttpClientContext.create());
+        } catch (AnalysisStoppedException e) {
+            return null;
+        } finally {
+            reportCompression();
+        }
     }
 
-    public DeltaAnalysisResult runOn(final Commits commits) {
+    private DeltaAnalysisResult runOn(final Commits commits, final AtomicBoolean stop, final HttpClientContext context) throws IOException {
         final DeltaAnalysisRequest payload = new DeltaAnalysisRequest(commits, config.gitRepisitoryToAnalyze(),
                 config.couplingThresholdPercent());
 
         try {
-            return synchronousRequestWith(payload, commits);
+            final HttpPost codeSceneRequest = createRequestFor(payload);
+            // concurrent builds asking for the same analysis share one request and its result
+            return InFlightDeltaAnalyses.coalesce(identityOf(payload), new Callable<DeltaAnalysisResult>() {
+                @Override
+                public DeltaAnalysisResult call() throws IOException {
+                    return requestWithRetries(codeSceneRequest, commits, stop, context);
+                }
+            });
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException("The configured CodeScene URL isn't valid", e);
+        }
+    }
+
+    private DeltaAnalysisResult requestWithRetries(final HttpPost codeSceneRequest, Commits commits, AtomicBoolean stop,
+                                                   HttpClientContext context) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            final long remaining = policy.remainingMillis(System.currentTimeMillis());
+            if (remaining <= 0) {
+                throw new OutOfTimeException("Gave up on the delta analysis at " + config.codeSceneUrl() +
+                        " since the time allotted to the CodeScene step has run out.", 0);
+            }
+            codeSceneRequest.setConfig(requestConfigWithin(remaining));
+
+            long retryAfterMillis = 0;
+            try {
+                return throttledRequestWith(codeSceneRequest, commits, stop, context, remaining);
+            } catch (CodeSceneUnavailableException | AnalysisStoppedException e) {
+                throw e;
+            } catch (DeltaAnalysisException e) {
+                if (!e.isRetryable() || attempt >= policy.maxRetries()) {
+                    throw e;
+                }
+                retryAfterMillis = e.getRetryAfterMillis();
+                reportRetry(attempt, e);
+            } catch (IOException e) {
+                if (!isRetryable(e) || attempt >= policy.maxRetries()) {
+                    throw new IOException("Failed to send request to CodeScene at " + config.codeSceneUrl(), e);
+                }
+                reportRetry(attempt, e);
+            }
+
+            final long delay = Math.max(retryAfterMillis, policy.backoffBeforeRetry(attempt + 1, ThreadLocalRandom.current()));
+            if (delay >= policy.remainingMillis(System.currentTimeMillis())) {
+                throw new OutOfTimeException("Gave up on the delta analysis at " + config.codeSceneUrl() +
+                        " since a retry wouldn't complete within the time allotted to the CodeScene step.", 0);
+            }
+            pause(delay);
+        }
+    }
+
+    private DeltaAnalysisResult throttledRequestWith(HttpPost codeSceneRequest, Commits commits, AtomicBoolean stop,
+                                                     HttpClientContext context, long remainingMillis) throws IOException {
+        final Slot slot = new Slot();
+        slot.take(remainingMillis);
+        try {
+            checkNotStopped(stop);
+            return guardedRequestWith(codeSceneRequest, commits, slot, context);
+        } finally {
+            slot.give();
+        }
+    }
+
+    /**
+     * The turn of one analysis at the throttle. It's held while a request is out, but not in between: an analysis that
+     * CodeScene runs in the background gives up its slot while it waits to poll, and takes one again for each poll.
+     */
+    private final class Slot {
+        private boolean held;
+
+        void take(long remainingMillis) throws IOException {
+            if (throttle != null && !held) {
+                acquire(throttle, job, remainingMillis, listener);
+                held = true;
+            }
+        }
+
+        /**
+         * Waits a while at most, for a request that should go out even when the throttle stays busy.
+         */
+        void tryTake(long timeoutMillis) {
+            if (throttle == null || held) {
+                return;
+            }
+            try {
+                held = throttle.acquire(job, timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void give() {
+            if (held) {
+                held = false;
+                throttle.release();
+            }
+        }
+    }
+
+    private static void checkNotStopped(AtomicBoolean stop) throws AnalysisStoppedException {
+        if (stop.get()) {
+            throw new AnalysisStoppedException("The build no longer needs the delta analysis.");
+        }
+    }
+
+    /**
+     * Waits for the throttle, and tells the build log if that took a while.
+     *
+     * @throws OutOfTimeException if there's no time left to wait
+     */
+    static void acquire(RequestThrottle throttle, String job, long remainingMillis, TaskListener listener) throws IOException {
+        final int ahead = throttle.getQueued();
+        final long start = System.nanoTime();
+        try {
+            if (!throttle.acquire(job, remainingMillis)) {
+                // nothing was sent, so a retry would only wait some more
+                throw new OutOfTimeException("Gave up waiting for a free slot at CodeScene " + throttle.getServer() +
+                        " since the time allotted to the CodeScene step has run out.", 0);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free slot at CodeScene");
+        }
+        final long waited = System.nanoTime() - start;
+        METRICS.requestQueued(waited);
+        if (waited >= TimeUnit.SECONDS.toNanos(1)) {
+            listener.getLogger().format("Waited %d ms behind %d queued request(s) for CodeScene at %s.%n",
+                    TimeUnit.NANOSECONDS.toMillis(waited), ahead, throttle.getServer());
+        }
+    }
+
+    /**
+     * Sends the request unless the circuit breaker is open, and tells the breaker how it went.
+     */
+    private DeltaAnalysisResult guardedRequestWith(HttpPost codeSceneRequest, Commits commits, Slot slot,
+                                                   HttpClientContext context) throws IOException {
+        if (!breaker.allowRequest()) {
+            METRICS.requestSkipped();
+            throw CodeSceneUnavailableException.of(breaker);
+        }
+
+        try {
+            final DeltaAnalysisResult result = synchronousRequestWith(codeSceneRequest, commits, slot, context);
+            breaker.recordSuccess();
+            return result;
+        } catch (OutOfTimeException e) {
+            // the build ran out of time, which says nothing about CodeScene either
+            breaker.recordAborted();
+            throw e;
+        } catch (PollFailedException e) {
+            // CodeScene went down while it ran the analysis
+            breaker.recordFailure(e.getMessage());
+            throw e;
+        } catch (DeltaAnalysisException e) {
+            if (e.isRetryable()) {
+                breaker.recordFailure("HTTP " + e.getStatusCode());
+            } else {
+                // the server is up and answering, it just didn't accept this request
+                breaker.recordSuccess();
+            }
+            throw e;
         } catch (IOException e) {
-            throw new RuntimeException("Failed to send request to CodeScene at " + config.codeSceneUrl().toString(), e);
+            if (!isAborted(e)) {
+                METRICS.requestFailed(e.getClass().getSimpleName());
+            }
+            if (isRetryable(e)) {
+                breaker.recordFailure(e.toString());
+            } else {
+                breaker.recordAborted();
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            breaker.recordAborted();
+            throw e;
+        }
+    }
+
+    /**
+     * No single wait may outlast the deadline, so the configured timeouts shrink as it comes closer.
+     */
+    private RequestConfig requestConfigWithin(long remainingMillis) {
+        final int cap = (int) Math.min(remainingMillis, Integer.MAX_VALUE);
+        return RequestConfig.custom()
+                .setConnectTimeout(Math.min(policy.connectTimeoutMillis(), cap))
+                .setSocketTimeout(Math.min(policy.socketTimeoutMillis(), cap))
+                .setConnectionRequestTimeout(Math.min(policy.connectionRequestTimeoutMillis(), cap))
+                .build();
+    }
+
+    private static boolean isRetryable(IOException e) {
+        // a misspelled host or a broken certificate won't go away by asking again, and an abort is an abort
+        return !isAborted(e)
+                && !(e instanceof UnknownHostException)
+                && !(e instanceof SSLException);
+    }
+
+    private void reportCompression() {
+        final long plain = plainBytes.getAndSet(0);
+        final long wire = wireBytes.getAndSet(0);
+        if (wire < plain) {
+            listener.getLogger().format("Compression saved %d of %d bytes exchanged with CodeScene (%d%%).%n",
+                    plain - wire, plain, (plain - wire) * 100 / plain);
+        }
+    }
+
+    private static boolean isAborted(IOException e) {
+        return e instanceof InterruptedIOException && Thread.currentThread().isInterrupted();
+    }
+
+    private void reportRetry(int attempt, IOException e) {
+        listener.getLogger().println(String.format("Delta analysis attempt %d of %d failed, will retry: %s",
+                attempt + 1, policy.maxRetries() + 1, e.getMessage()));
+    }
+
+    private void reportFailedPoll(int failedPolls, String failure) {
+        listener.getLogger().println(String.format("Polling for the delta analysis failed %d of at most %d time(s) in a row, will poll again: %s",
+                failedPolls, policy.maxRetries(), failure));
+    }
+
+    private static void pause(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry the delta analysis");
         }
     }
 
 
-    private DeltaAnalysisResult synchronousRequestWith(final DeltaAnalysisRequest payload, Commits commits) throws URISyntaxException, IOException {
-        final HttpPost codeSceneRequest = createRequestFor(payload);
-        final CloseableHttpClient httpclient = HttpClients.createDefault();
+    private String identityOf(final DeltaAnalysisRequest payload) {
+        // the user is part of the identity, since another user might not be allowed to see the same results
+        return config.codeSceneUrl().toExternalForm() + '\n' + config.user().name() + '\n' + payload.asJson().toString();
+    }
+
+    private DeltaAnalysisResult synchronousRequestWith(final HttpPost codeSceneRequest, Commits commits, Slot slot,
+                                                       HttpClientContext context) throws IOException {
+        final long start = System.nanoTime();
+        final CloseableHttpResponse rawResponse = httpClient.execute(codeSceneRequest, context);
+        final URI analysisInBackground;
+        final long retryAfterMillis;
 
         try {
-            final HttpResponse rawResponse = httpclient.execute(codeSceneRequest);
             final StatusLine status = rawResponse.getStatusLine();
 
             if (HttpStatus.SC_CREATED == status.getStatusCode()) {
                 return parseSuccessfulAnalysisResults(rawResponse, commits);
             }
 
-            reportFailureAsException(rawResponse);
+            if (HttpStatus.SC_ACCEPTED != status.getStatusCode()) {
+                reportFailureAsException(rawResponse);
+            }
+
+            analysisInBackground = locationOf(codeSceneRequest, rawResponse);
+            retryAfterMillis = retryAfterMillisOf(rawResponse);
+
+        } finally {
+            // consume whatever is left so that the connection goes back to the pool instead of being dropped
+            EntityUtils.consumeQuietly(rawResponse.getEntity());
+            rawResponse.close();
+            METRICS.requestCompleted(System.nanoTime() - start);
+        }
+
+        return pollForResult(analysisInBackground, retryAfterMillis, commits, slot, context);
+    }
+
+    private static URI locationOf(HttpPost codeSceneRequest, HttpResponse rawResponse) throws DeltaAnalysisException {
+        final Header location = rawResponse.getFirstHeader("Location");
+        if (location == null || location.getValue().trim().isEmpty()) {
+            throw new DeltaAnalysisException("CodeScene accepted the delta analysis, but didn't say where to find its result.",
+                    HttpStatus.SC_ACCEPTED, false, 0);
+        }
+        try {
+            return codeSceneRequest.getURI().resolve(location.getValue().trim());
+        } catch (IllegalArgumentException e) {
+            throw new DeltaAnalysisException("CodeScene accepted the delta analysis, but its location " + location.getValue()
+                    + " isn't valid.", HttpStatus.SC_ACCEPTED, false, 0);
+        }
+    }
+
+    /**
+     * Waits for an analysis that CodeScene runs in the background. Unless its result arrives, e.g. since the build is
+     * aborted or the step runs out of time, the analysis is cancelled so that CodeScene doesn't work on it in vain.
+     * <p>
+     * A poll that fails temporarily is sent again, up to the configured retries in a row. Once those are used up the
+     * failure isn't retryable, since a retry would submit the analysis all over again.
+     * <p>
+     * The slot at the throttle is given up while waiting, so that the analysis takes a slot for each poll instead of
+     * one for as long as CodeScene works on it.
+     */
+    private DeltaAnalysisResult pollForResult(URI analysis, long retryAfterMillis, Commits commits, Slot slot,
+                                              HttpClientContext context) throws IOException {
+        listener.getLogger().format("CodeScene runs the delta analysis in the background, waiting for its result at %s.%n", analysis);
+        final PollSchedule schedule = new PollSchedule();
+        long delay = schedule.nextDelay(retryAfterMillis);
+        int failedPolls = 0;
+        boolean completed = false;
+        try {
+            while (true) {
+                // no request is out while we wait
+                slot.give();
+                if (delay >= policy.remainingMillis(System.currentTimeMillis())) {
+                    // not worth a retry, which would submit the analysis all over again
+                    throw new OutOfTimeException("Gave up waiting for the delta analysis at " + analysis +
+                            " since the time allotted to the CodeScene step has run out.", HttpStatus.SC_ACCEPTED);
+                }
+                pause(delay);
+                slot.take(policy.remainingMillis(System.currentTimeMillis()));
 
+                final HttpGet poll = new HttpGet(analysis);
+                poll.addHeader(authorization());
+                poll.addHeader("Accept-Encoding", "gzip");
+                poll.setConfig(requestConfigWithin(policy.remainingMillis(System.currentTimeMillis())));
+                final CloseableHttpResponse rawResponse;
+                try {
+                    rawResponse = httpClient.execute(poll, context);
+                } catch (IOException e) {
+                    if (!isRetryable(e)) {
+                        throw e;
+                    }
+                    if (++failedPolls > policy.maxRetries()) {
+                        METRICS.requestFailed(e.getClass().getSimpleName());
+                        throw (PollFailedException) new PollFailedException("Failed to poll for the delta analysis at "
+                                + analysis + ": " + e, 0).initCause(e);
+                    }
+                    reportFailedPoll(failedPolls, e.toString());
+                    delay = schedule.nextDelay(0);
+                    continue;
+                }
+                try {
+                    final int statusCode = rawResponse.getStatusLine().getStatusCode();
+                    if (HttpStatus.SC_OK == statusCode || HttpStatus.SC_CREATED == statusCode) {
+                        final DeltaAnalysisResult result = parseSuccessfulAnalysisResults(rawResponse, commits);
+                        completed = true;
+                        return result;
+                    }
+                    if (HttpStatus.SC_ACCEPTED == statusCode) {
+                        failedPolls = 0;
+                    } else if (!policy.isRetryable(statusCode)) {
+                        reportFailureAsException(rawResponse, false);
+                    } else if (++failedPolls <= policy.maxRetries()) {
+                        reportFailedPoll(failedPolls, rawResponse.getStatusLine().toString());
+                    } else {
+                        throw new PollFailedException(failureMessageOf(rawResponse), statusCode);
+                    }
+                    delay = schedule.nextDelay(retryAfterMillisOf(rawResponse));
+                } finally {
+                    EntityUtils.consumeQuietly(rawResponse.getEntity());
+                    rawResponse.close();
+                }
+            }
         } finally {
-            httpclient.close();
+            if (!completed) {
+                cancel(analysis, slot, context);
+            }
         }
+    }
 
-        throw new RuntimeException("Internal error: we failed to deal properly with the request.");
+    private void cancel(URI analysis, Slot slot, HttpClientContext context) {
+        // an abort interrupts us, but the cancellation still has to go out
+        final boolean interrupted = Thread.interrupted();
+        // and since it spares CodeScene the work, it goes out even if the throttle stays busy
+        slot.tryTake(policy.connectTimeoutMillis());
+        final HttpDelete delete = new HttpDelete(analysis);
+        delete.addHeader(authorization());
+        delete.setConfig(RequestConfig.custom()
+                .setConnectTimeout(policy.connectTimeoutMillis())
+                .setSocketTimeout(policy.connectTimeoutMillis())
+                .setConnectionRequestTimeout(policy.connectTimeoutMillis())
+                .build());
+        try {
+            final CloseableHttpResponse rawResponse = httpClient.execute(delete, context);
+            EntityUtils.consumeQuietly(rawResponse.getEntity());
+            rawResponse.close();
+            listener.getLogger().format("Cancelled the delta analysis at %s.%n", analysis);
+        } catch (IOException e) {
+            listener.getLogger().format("Failed to cancel the delta analysis at %s: %s%n", analysis, e.getMessage());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     private void reportFailureAsException(HttpResponse rawResponse) throws IOException {
+        reportFailureAsException(rawResponse, policy.isRetryable(rawResponse.getStatusLine().getStatusCode()));
+    }
+
+    private void reportFailureAsException(HttpResponse rawResponse, boolean retryable) throws IOException {
+        throw new DeltaAnalysisException(failureMessageOf(rawResponse), rawResponse.getStatusLine().getStatusCode(),
+                retryable, retryAfterMillisOf(rawResponse));
+    }
+
+    private static String failureMessageOf(HttpResponse rawResponse) throws IOException {
         final HttpEntity responseBody = rawResponse.getEntity();
-        final String errorMessage = EntityUtils.toString(responseBody);
-        throw new RuntimeException(String.format("Failed to execute delta analysis. Status: %s, Reason: %s", rawResponse.getStatusLine(), errorMessage));
+        final String errorMessage = responseBody == null ? "" : EntityUtils.toString(
+                isGzipped(responseBody) ? new GzipDecompressingEntity(responseBody) : responseBody);
+        METRICS.requestFailed(Integer.toString(rawResponse.getStatusLine().getStatusCode()));
+        return String.format("Failed to execute delta analysis. Status: %s, Reason: %s", rawResponse.getStatusLine(), errorMessage);
+    }
+
+    /**
+     * Only the delay-seconds form of Retry-After is honoured; CodeScene doesn't send HTTP dates.
+     */
+    private static long retryAfterMillisOf(HttpResponse rawResponse) {
+        final Header retryAfter = rawResponse.getFirstHeader("Retry-After");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.getValue().trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 
     private DeltaAnalysisResult parseSuccessfulAnalysisResults(HttpResponse rawResponse, Commits commits) throws IOException {
@@ -72,25 +520,59 @@ public class DeltaAnalysis {
             throw new RuntimeException("Internal error: The delta analysis was a success but failed to parse the returned results");
         }
 
-        final JsonReader reader = Json.createReader(responseBody.getContent());
-        final JsonObject delta = reader.readObject();
-
-        return new DeltaAnalysisResult(commits, delta);
+        final long start = System.nanoTime();
+        final CountingInputStream wire = new CountingInputStream(responseBody.getContent());
+        // decompressed here rather than by the client, which would hide the size on the wire
+        final CountingInputStream content = new CountingInputStream(isGzipped(responseBody) ? new GZIPInputStream(wire) : wire);
+        final DeltaAnalysisResult result = DeltaAnalysisResultParser.parse(commits, content);
+        METRICS.resultParsed(result, content.getByteCount(), System.nanoTime() - start);
+        transferred("response", content.getByteCount(), wire.getByteCount());
+        return result;
     }
 
-    private HttpPost createRequestFor(final DeltaAnalysisRequest payload) throws URISyntaxException {
-        final CodeSceneUser user = config.user();
+    private static boolean isGzipped(HttpEntity entity) {
+        final Header encoding = entity.getContentEncoding();
+        return encoding != null && "gzip".equalsIgnoreCase(encoding.getValue().trim());
+    }
 
-        final Header authorization = new BasicHeader("Authorization", "Basic " + user.asBase64Encoded());
+    private void transferred(String direction, long plain, long wire) {
+        plainBytes.addAndGet(plain);
+        wireBytes.addAndGet(wire);
+        METRICS.bodyTransferred(direction, plain, wire);
+    }
 
+    private HttpPost createRequestFor(final DeltaAnalysisRequest payload) throws URISyntaxException, IOException {
         HttpPost codeSceneRequest = new HttpPost(config.codeSceneUrl().toURI());
-        codeSceneRequest.addHeader(authorization);
+        codeSceneRequest.addHeader(authorization());
+        codeSceneRequest.addHeader("Accept-Encoding", "gzip");
+        if (policy.respondAsync()) {
+            // servers that don't know the preference ignore it and answer as usual
+            codeSceneRequest.addHeader("Prefer", "respond-async");
+        }
 
-        StringEntity requestEntity = new StringEntity(
-                payload.asJson().toString(),
-                ContentType.APPLICATION_JSON);
-        codeSceneRequest.setEntity(requestEntity);
+        final byte[] json = payload.asJson().toString().getBytes(StandardCharsets.UTF_8);
+        if (policy.compressRequests()) {
+            final ByteArrayEntity requestEntity = new ByteArrayEntity(gzip(json), ContentType.APPLICATION_JSON);
+            requestEntity.setContentEncoding("gzip");
+            codeSceneRequest.setEntity(requestEntity);
+            transferred("request", json.length, requestEntity.getContentLength());
+        } else {
+            codeSceneRequest.setEntity(new ByteArrayEntity(json, ContentType.APPLICATION_JSON));
+            transferred("request", json.length, json.length);
+        }
 
         return codeSceneRequest;
     }
+
+    private Header authorization() {
+        return new BasicHeader("Authorization", config.user().authorization());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
 }
@@ -0,0 +1,243 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.XmlFile;
+import org.jenkinsci.plugins.codescene.Domain.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the delta analysis results of individual commits on the controller, so that re-runs and other
+ * builds of the same commits don't have to ask CodeScene again.
+ * A result is identified by the same fields that make up a {@link DeltaAnalysisRequest}: the repository, the
+ * commit and the temporal coupling threshold, and like {@link DeltaAnalysis} coalesces requests, by the CodeScene
+ * server and the user asking it. Another project on another server may analyse a repository of the same name, and
+ * another user might not be allowed to see the result.
+ * The least recently used results are evicted once the cache is full, and results expire after a maximum age.
+ */
+public class DeltaAnalysisCache {
+    private static final Logger LOGGER = Logger.getLogger(DeltaAnalysisCache.class.getName());
+
+    private final XmlFile file;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries;
+    private long maxAgeMillis;
+    private boolean loaded;
+    private boolean dirty;
+
+    /**
+     * @param file where the cache is persisted between restarts, or null to keep it in memory only
+     */
+    public DeltaAnalysisCache(XmlFile file, int maxEntries, int maxAgeHours) {
+        this.file = file;
+        configure(maxEntries, maxAgeHours);
+    }
+
+    public synchronized void configure(int maxEntries, int maxAgeHours) {
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = TimeUnit.HOURS.toMillis(maxAgeHours);
+        evict();
+    }
+
+    public synchronized boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @return the cached result, or null when the commit hasn't been analysed or the result has expired
+     */
+    public synchronized DeltaAnalysisResult get(Configuration config, Commit commit) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ensureLoaded();
+
+        final Key key = new Key(config.codeSceneUrl().toExternalForm(), config.user().name(),
+                config.gitRepisitoryToAnalyze().value(), commit.value(), config.couplingThresholdPercent());
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry)) {
+            entries.remove(key);
+            dirty = true;
+            return null;
+        }
+        return entry.toResult(commit);
+    }
+
+    public synchronized void put(Configuration config, Commit commit, DeltaAnalysisResult result) {
+        if (!isEnabled()) {
+            return;
+        }
+        ensureLoaded();
+
+        final Entry entry = new Entry(config.codeSceneUrl().toExternalForm(), config.user().name(),
+                config.gitRepisitoryToAnalyze().value(), commit.value(), config.couplingThresholdPercent(), result, now());
+        entries.put(entry.key(), entry);
+        dirty = true;
+        evictOverflow();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the cache to disk, unless nothing changed since it was loaded or last saved.
+     */
+    public synchronized void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+        evict();
+        try {
+            file.write(new ArrayList<>(entries.values()));
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the CodeScene delta analysis cache to " + file, e);
+        }
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            final List<Entry> persisted = (List<Entry>) file.read();
+            for (Entry entry : persisted) {
+                if (entry.codeSceneUrl == null || entry.user == null) {
+                    // saved before the server and user were part of the key, so we can't tell whose result it is
+                    dirty = true;
+                    continue;
+                }
+                entries.put(entry.key(), entry);
+            }
+            evict();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the CodeScene delta analysis cache from " + file + ", starting with an empty cache", e);
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next())) {
+                it.remove();
+                dirty = true;
+            }
+        }
+        evictOverflow();
+    }
+
+    private void evictOverflow() {
+        // iterates in access order, i.e. least recently used first
+        final Iterator<Entry> leastRecentlyUsedFirst = entries.values().iterator();
+        while (entries.size() > Math.max(maxEntries, 0) && leastRecentlyUsedFirst.hasNext()) {
+            leastRecentlyUsedFirst.next();
+            leastRecentlyUsedFirst.remove();
+            dirty = true;
+        }
+    }
+
+    private boolean isExpired(Entry entry) {
+        return now() - entry.createdAt > maxAgeMillis;
+    }
+
+    private static final class Key {
+        private final String codeSceneUrl;
+        private final String user;
+        private final String repository;
+        private final String commit;
+        private final int couplingThresholdPercent;
+
+        Key(String codeSceneUrl, String user, String repository, String commit, int couplingThresholdPercent) {
+            this.codeSceneUrl = codeSceneUrl;
+            this.user = user;
+            this.repository = repository;
+            this.commit = commit;
+            this.couplingThresholdPercent = couplingThresholdPercent;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return couplingThresholdPercent == other.couplingThresholdPercent
+                    && codeSceneUrl.equals(other.codeSceneUrl)
+                    && user.equals(other.user)
+                    && repository.equals(other.repository)
+                    && commit.equals(other.commit);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = codeSceneUrl.hashCode();
+            result = 31 * result + user.hashCode();
+            result = 31 * result + repository.hashCode();
+            result = 31 * result + commit.hashCode();
+            result = 31 * result + couplingThresholdPercent;
+            return result;
+        }
+    }
+
+    /**
+     * The persisted form of a cached result.
+     */
+    private static final class Entry {
+        private final String codeSceneUrl;
+        private final String user;
+        private final String repository;
+        private final String commit;
+        private final int couplingThresholdPercent;
+        private final String viewUrl;
+        private final int risk;
+        private final List<Warning> warnings;
+        private final long createdAt;
+
+        Entry(String codeSceneUrl, String user, String repository, String commit, int couplingThresholdPercent,
+              DeltaAnalysisResult result, long createdAt) {
+            this.codeSceneUrl = codeSceneUrl;
+            this.user = user;
+            this.repository = repository;
+            this.commit = commit;
+            this.couplingThresholdPercent = couplingThresholdPercent;
+            this.viewUrl = result.getViewUrl();
+            this.risk = result.getRisk().getValue();
+            this.warnings = result.getWarnings().value();
+            this.createdAt = createdAt;
+        }
+
+        Key key() {
+            return new Key(codeSceneUrl, user, repository, commit, couplingThresholdPercent);
+        }
+
+        DeltaAnalysisResult toResult(Commit c) {
+            final Warnings ws = new Warnings();
+            for (Warning w : warnings) {
+                ws.add(w);
+            }
+            return new DeltaAnalysisResult(Commits.from(c), viewUrl, new RiskClassification(risk), ws);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.io.IOException;
+
+/**
+ * CodeScene answered a delta analysis request with something else than the results.
+ */
+public class DeltaAnalysisException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+    private final boolean retryable;
+    private final long retryAfterMillis;
+
+    public DeltaAnalysisException(String message, int statusCode, boolean retryable, long retryAfterMillis) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true when the failure is likely temporary, e.g. an overloaded or restarting server
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * @return how long the server asked us to wait before trying again, or 0 if it didn't say
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
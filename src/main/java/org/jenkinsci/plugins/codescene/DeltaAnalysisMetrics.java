@@ -0,0 +1,165 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisResult;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * How much time and data the delta analyses of all jobs take, since Jenkins started.
+ * Published in the Prometheus text format by {@link CodeSceneManagementLink}.
+ */
+final class DeltaAnalysisMetrics {
+    private static final DeltaAnalysisMetrics INSTANCE = new DeltaAnalysisMetrics();
+    private static final int MAX_RISK = 10;
+
+    private final Histogram requestSeconds = new Histogram("codescene_delta_analysis_request_seconds",
+            "Time from sending a delta analysis request until its response has been read.",
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300);
+    private final Histogram parseSeconds = new Histogram("codescene_delta_analysis_parse_seconds",
+            "Time spent parsing successful delta analysis responses.",
+            0.0001, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1);
+    private final Histogram commitRangeSeconds = new Histogram("codescene_commit_range_seconds",
+            "Time spent finding the commits to analyse in the workspace.",
+            0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60);
+    private final Histogram queueSeconds = new Histogram("codescene_delta_analysis_queue_seconds",
+            "Time delta analysis requests waited for the request throttle of their CodeScene server.",
+            0.001, 0.01, 0.1, 0.5, 1, 5, 10, 30, 60, 300);
+    private final Histogram responseBytes = new Histogram("codescene_delta_analysis_response_bytes",
+            "Size of successful delta analysis responses.",
+            1 << 10, 4 << 10, 16 << 10, 64 << 10, 256 << 10, 1 << 20, 4 << 20, 16 << 20);
+    private final Histogram warnings = new Histogram("codescene_delta_analysis_warnings",
+            "Number of warning categories per delta analysis.",
+            0, 1, 2, 3, 5, 10, 20, 50);
+
+    private final AtomicLongArray risks = new AtomicLongArray(MAX_RISK + 1);
+    private final ConcurrentMap<String, AtomicLong> failures = new ConcurrentHashMap<>();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    // by direction, the request or response bodies as JSON and as sent over the wire
+    private final ConcurrentMap<String, AtomicLong> plainBytes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> wireBytes = new ConcurrentHashMap<>();
+
+    DeltaAnalysisMetrics() {
+    }
+
+    static DeltaAnalysisMetrics get() {
+        return INSTANCE;
+    }
+
+    void requestCompleted(long nanos) {
+        requestSeconds.observe(seconds(nanos));
+    }
+
+    void requestQueued(long nanos) {
+        queueSeconds.observe(seconds(nanos));
+    }
+
+    void resultParsed(DeltaAnalysisResult result, long responseBytes, long parseNanos) {
+        parseSeconds.observe(seconds(parseNanos));
+        this.responseBytes.observe(responseBytes);
+        warnings.observe(result.getWarnings().value().size());
+        risks.incrementAndGet(Math.max(0, Math.min(MAX_RISK, result.getRisk().getValue())));
+    }
+
+    /**
+     * @param reason the HTTP status code, or the kind of exception for failures without a response
+     */
+    void requestFailed(String reason) {
+        counterOf(failures, reason).incrementAndGet();
+    }
+
+    /**
+     * @param direction either "request" or "response"
+     */
+    void bodyTransferred(String direction, long plain, long wire) {
+        counterOf(plainBytes, direction).addAndGet(plain);
+        counterOf(wireBytes, direction).addAndGet(wire);
+    }
+
+    private static AtomicLong counterOf(ConcurrentMap<String, AtomicLong> counters, String label) {
+        AtomicLong counter = counters.get(label);
+        if (counter == null) {
+            final AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(label, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    void requestSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void commitRangeResolved(long nanos) {
+        commitRangeSeconds.observe(seconds(nanos));
+    }
+
+    void cacheHit() {
+        cacheHits.incrementAndGet();
+    }
+
+    void cacheMiss() {
+        cacheMisses.incrementAndGet();
+    }
+
+    String asPrometheusText() {
+        final StringBuilder out = new StringBuilder();
+        requestSeconds.appendTo(out);
+        queueSeconds.appendTo(out);
+        parseSeconds.appendTo(out);
+        responseBytes.appendTo(out);
+        warnings.appendTo(out);
+        commitRangeSeconds.appendTo(out);
+
+        counterHeader(out, "codescene_delta_analysis_risk_total", "Delta analyses by the risk CodeScene classified them with.");
+        for (int risk = 0; risk <= MAX_RISK; risk++) {
+            out.append("codescene_delta_analysis_risk_total{risk=\"").append(risk).append("\"} ").append(risks.get(risk)).append('\n');
+        }
+
+        counterHeader(out, "codescene_delta_analysis_failures_total", "Failed delta analysis requests, by HTTP status or error.");
+        for (Map.Entry<String, AtomicLong> failure : new TreeMap<>(failures).entrySet()) {
+            out.append("codescene_delta_analysis_failures_total{reason=\"").append(failure.getKey()).append("\"} ")
+                    .append(failure.getValue().get()).append('\n');
+        }
+
+        labelledCounter(out, "codescene_delta_analysis_body_bytes_total",
+                "Bytes of delta analysis request and response bodies, before compression.", plainBytes);
+        labelledCounter(out, "codescene_delta_analysis_wire_bytes_total",
+                "Bytes of delta analysis request and response bodies, as sent over the wire.", wireBytes);
+        counter(out, "codescene_delta_analysis_skipped_total", "Delta analyses not sent since the circuit breaker was open.", skipped.get());
+        counter(out, "codescene_delta_analysis_cache_hits_total", "Individual commit analyses answered from the result cache.", cacheHits.get());
+        counter(out, "codescene_delta_analysis_cache_misses_total", "Individual commit analyses not found in the result cache.", cacheMisses.get());
+        return out.toString();
+    }
+
+    private static void counterHeader(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+    }
+
+    private static void labelledCounter(StringBuilder out, String name, String help, Map<String, AtomicLong> byDirection) {
+        counterHeader(out, name, help);
+        for (Map.Entry<String, AtomicLong> direction : new TreeMap<>(byDirection).entrySet()) {
+            out.append(name).append("{direction=\"").append(direction.getKey()).append("\"} ")
+                    .append(direction.getValue().get()).append('\n');
+        }
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        counterHeader(out, name, help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
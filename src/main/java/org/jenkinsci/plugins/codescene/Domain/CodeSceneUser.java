@@ -2,12 +2,23 @@ package org.jenkinsci.plugins.codescene.Domain;
 
 import org.apache.commons.codec.binary.Base64;
 
+import java.io.Serializable;
 import java.nio.charset.Charset;
 
-public class CodeSceneUser {
+/**
+ * A CodeScene user with the value of its HTTP Authorization header, which is encoded once when the user is created.
+ * <p>
+ * A build agent that sends the delta analyses gets a copy {@link #withoutPassword() without the password}, but that copy
+ * still carries the Authorization header, and Basic authorization is just the name and password in Base64. So it
+ * grants the same access to CodeScene as the password itself.
+ */
+public class CodeSceneUser implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final Charset UTF8 = Charset.forName("UTF8");
     private final String name;
     private final String password;
+    private final String authorization;
 
     public CodeSceneUser(final String name, final String password) {
         if (name == null || name.isEmpty()) {
@@ -20,18 +31,41 @@ public class CodeSceneUser {
 
         this.name = name;
         this.password = password;
+        this.authorization = "Basic " + new String(Base64.encodeBase64((name + ":" + password).getBytes(UTF8)), UTF8);
+    }
+
+    private CodeSceneUser(final String name, final String password, final String authorization) {
+        this.name = name;
+        this.password = password;
+        this.authorization = authorization;
+    }
+
+    /**
+     * @return a copy of this user that knows the Authorization header, but not the password it was encoded from
+     */
+    public CodeSceneUser withoutPassword() {
+        return new CodeSceneUser(name, null, authorization);
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * @return the password, or null for a user {@link #withoutPassword() without it}
+     */
     public String password() {
         return password;
     }
 
     public String asBase64Encoded() {
-        final byte[] bs = (name + ":" + password).getBytes(UTF8);
+        return authorization.substring("Basic ".length());
+    }
 
-        return new String(Base64.encodeBase64(bs), UTF8); }
+    /**
+     * The value of the HTTP Authorization header for this user.
+     */
+    public String authorization() {
+        return authorization;
+    }
 }
@@ -2,10 +2,13 @@ package org.jenkinsci.plugins.codescene.Domain;
 
 import com.sun.org.apache.xerces.internal.impl.xpath.regex.Match;
 
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class Commit {
+public class Commit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String v;
 
     private final static Pattern hashPattern = Pattern.compile("[0-9a-f]+");
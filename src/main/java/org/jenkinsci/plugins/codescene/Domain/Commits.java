@@ -1,10 +1,12 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-public class Commits {
+public class Commits implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final List<Commit> vs;
 
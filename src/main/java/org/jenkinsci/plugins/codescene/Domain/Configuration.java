@@ -1,8 +1,10 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
+import java.io.Serializable;
 import java.net.URL;
 
-public class Configuration {
+public class Configuration implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final URL url;
     private final CodeSceneUser user;
@@ -17,6 +19,13 @@ public class Configuration {
         this.couplingThresholdPercent = couplingThresholdPercent;
     }
 
+    /**
+     * @return a copy of this configuration for a build agent, with the user {@link CodeSceneUser#withoutPassword() without its password}
+     */
+    public Configuration withoutPassword() {
+        return new Configuration(url, user.withoutPassword(), repo, couplingThresholdPercent);
+    }
+
     public URL codeSceneUrl() {
         return url;
     }
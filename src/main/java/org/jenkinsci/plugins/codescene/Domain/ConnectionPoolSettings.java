@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import java.io.Serializable;
+
+public class ConnectionPoolSettings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int maxConnectionsTotal;
+    private final int maxConnectionsPerRoute;
+    private final int keepAliveSeconds;
+    private final int idleConnectionTimeoutSeconds;
+
+    public ConnectionPoolSettings(int maxConnectionsTotal, int maxConnectionsPerRoute, int keepAliveSeconds,
+                                  int idleConnectionTimeoutSeconds) {
+        if (maxConnectionsTotal < 1) {
+            throw new IllegalArgumentException("The connection pool needs room for at least one connection. The value " + maxConnectionsTotal + " is invalid.");
+        }
+
+        if (maxConnectionsPerRoute < 1 || maxConnectionsPerRoute > maxConnectionsTotal) {
+            throw new IllegalArgumentException("The connections per route must be between 1 and the total number of connections. The value " + maxConnectionsPerRoute + " is invalid.");
+        }
+
+        if (keepAliveSeconds < 1) {
+            throw new IllegalArgumentException("Keep-alive has to be at least one second. The value " + keepAliveSeconds + " is invalid.");
+        }
+
+        if (idleConnectionTimeoutSeconds < 1) {
+            throw new IllegalArgumentException("Idle connections have to be kept for at least one second. The value " + idleConnectionTimeoutSeconds + " is invalid.");
+        }
+
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.idleConnectionTimeoutSeconds = idleConnectionTimeoutSeconds;
+    }
+
+    public int maxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public int maxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int keepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public int idleConnectionTimeoutSeconds() {
+        return idleConnectionTimeoutSeconds;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ConnectionPoolSettings)) {
+            return false;
+        }
+
+        final ConnectionPoolSettings other = (ConnectionPoolSettings) o;
+        return maxConnectionsTotal == other.maxConnectionsTotal
+                && maxConnectionsPerRoute == other.maxConnectionsPerRoute
+                && keepAliveSeconds == other.keepAliveSeconds
+                && idleConnectionTimeoutSeconds == other.idleConnectionTimeoutSeconds;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = maxConnectionsTotal;
+        result = 31 * result + maxConnectionsPerRoute;
+        result = 31 * result + keepAliveSeconds;
+        result = 31 * result + idleConnectionTimeoutSeconds;
+        return result;
+    }
+}
@@ -2,10 +2,13 @@ package org.jenkinsci.plugins.codescene.Domain;
 
 import javax.json.JsonArray;
 import javax.json.JsonObject;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class DeltaAnalysisResult {
+public class DeltaAnalysisResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final String viewUrl;
     private final Commits commits;
     private final RiskClassification risk;
@@ -22,6 +25,13 @@ public class DeltaAnalysisResult {
         this.commits = commits;
     }
 
+    public DeltaAnalysisResult(final Commits commits, final String viewUrl, final RiskClassification risk, final Warnings warnings) {
+        this.commits = commits;
+        this.viewUrl = viewUrl;
+        this.risk = risk;
+        this.warnings = warnings;
+    }
+
     private RiskClassification riskFrom(JsonObject deltaResult) {
         return new RiskClassification(deltaResult.getJsonNumber("risk").intValue());
     }
@@ -37,13 +47,11 @@ public class DeltaAnalysisResult {
             final WarningCategory category = new WarningCategory(w.getString("category"));
             final JsonArray jsonDetails = w.getJsonArray("details");
 
-            List<String> ds = new ArrayList<>();
+            final List<String> details = new ArrayList<>(jsonDetails.size());
             for (int j=0; j < jsonDetails.size(); j++) {
-                ds.add(jsonDetails.getString(j));
+                details.add(jsonDetails.getString(j));
             }
 
-            final List<String> details = new ArrayList<>(ds);
-
             ws.add(new Warning(category, details));
         }
 
@@ -0,0 +1,158 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link DeltaAnalysisResult} straight from the events of a streaming JSON parser, without first reading
+ * the whole response into a tree. Each warning detail is allocated once, as the string that ends up in the result.
+ * Unknown fields are skipped, and parsing stops as soon as the response reports an API version we don't support.
+ */
+public class DeltaAnalysisResultParser {
+
+    private static final String SUPPORTED_VERSION = "1";
+
+    public static DeltaAnalysisResult parse(final Commits commits, final InputStream in) {
+        final JsonParser parser = Json.createParser(in);
+        try {
+            return parse(commits, parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    static DeltaAnalysisResult parse(final Commits commits, final JsonParser parser) {
+        expect(parser, Event.START_OBJECT);
+
+        String version = null;
+        String viewUrl = null;
+        RiskClassification risk = null;
+        Warnings warnings = new Warnings();
+
+        for (Event e = parser.next(); e == Event.KEY_NAME; e = parser.next()) {
+            switch (parser.getString()) {
+                case "version":
+                    version = stringValue(parser);
+                    ensureTheVersionIsSupported(version);
+                    break;
+                case "view":
+                    viewUrl = stringValue(parser);
+                    break;
+                case "result":
+                    expect(parser, Event.START_OBJECT);
+                    for (Event r = parser.next(); r == Event.KEY_NAME; r = parser.next()) {
+                        switch (parser.getString()) {
+                            case "risk":
+                                expect(parser, Event.VALUE_NUMBER);
+                                risk = new RiskClassification(parser.getInt());
+                                break;
+                            case "warnings":
+                                warnings = warningsFrom(parser);
+                                break;
+                            default:
+                                skipValue(parser, parser.next());
+                        }
+                    }
+                    break;
+                default:
+                    skipValue(parser, parser.next());
+            }
+        }
+
+        if (version == null) {
+            throw new RuntimeException("The CodeScene API response doesn't report its version. You need to upgrade this plug-in.");
+        }
+        if (viewUrl == null || risk == null) {
+            throw new RuntimeException("Internal error: The delta analysis was a success but the returned results lack a view URL or risk");
+        }
+
+        return new DeltaAnalysisResult(commits, viewUrl, risk, warnings);
+    }
+
+    private static Warnings warningsFrom(final JsonParser parser) {
+        final Warnings ws = new Warnings();
+
+        expect(parser, Event.START_ARRAY);
+        for (Event e = parser.next(); e == Event.START_OBJECT; e = parser.next()) {
+            WarningCategory category = null;
+            List<String> details = new ArrayList<>();
+
+            for (Event w = parser.next(); w == Event.KEY_NAME; w = parser.next()) {
+                switch (parser.getString()) {
+                    case "category":
+                        category = new WarningCategory(stringValue(parser));
+                        break;
+                    case "details":
+                        expect(parser, Event.START_ARRAY);
+                        for (Event d = parser.next(); d == Event.VALUE_STRING; d = parser.next()) {
+                            details.add(parser.getString());
+                        }
+                        break;
+                    default:
+                        skipValue(parser, parser.next());
+                }
+            }
+
+            if (category == null) {
+                throw new RuntimeException("Internal error: failed to parse the delta analysis results, a warning lacks its category");
+            }
+            ws.add(new Warning(category, details));
+        }
+
+        return ws;
+    }
+
+    private static void ensureTheVersionIsSupported(final String version) {
+        if (!SUPPORTED_VERSION.equals(version)) {
+            throw new RuntimeException("The CodeScene API reports version " + version + ", which we don't know. You need to upgrade this plug-in.");
+        }
+    }
+
+    private static String stringValue(final JsonParser parser) {
+        final Event e = parser.next();
+        if (e != Event.VALUE_STRING && e != Event.VALUE_NUMBER) {
+            throw unexpected(e, Event.VALUE_STRING);
+        }
+        return parser.getString();
+    }
+
+    private static void expect(final JsonParser parser, final Event expected) {
+        final Event e = parser.next();
+        if (e != expected) {
+            throw unexpected(e, expected);
+        }
+    }
+
+    /**
+     * Skips the value that starts with the given event, including any nested objects and arrays.
+     */
+    private static void skipValue(final JsonParser parser, final Event first) {
+        if (first != Event.START_OBJECT && first != Event.START_ARRAY) {
+            return;
+        }
+
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case START_OBJECT:
+                case START_ARRAY:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    depth--;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static RuntimeException unexpected(final Event actual, final Event expected) {
+        return new RuntimeException("Internal error: failed to parse the delta analysis results, expected " + expected + " but got " + actual);
+    }
+}
@@ -1,6 +1,9 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
-public class Repository {
+import java.io.Serializable;
+
+public class Repository implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final String name;
 
@@ -0,0 +1,123 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * How long a delta analysis request may take, and how failed requests are retried.
+ * All requests of a build share one deadline, so the whole step finishes in bounded time no matter how many
+ * requests it sends or how often they are retried.
+ */
+public class RequestPolicy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final int connectionRequestTimeoutMillis;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long deadline;
+    private final boolean compressRequests;
+    private final boolean respondAsync;
+
+    /**
+     * @param deadline the point in time, in milliseconds since the epoch, after which no more requests are sent
+     */
+    public RequestPolicy(int connectTimeoutMillis, int socketTimeoutMillis, int connectionRequestTimeoutMillis,
+                         int maxRetries, long initialBackoffMillis, long maxBackoffMillis, long deadline) {
+        this(connectTimeoutMillis, socketTimeoutMillis, connectionRequestTimeoutMillis, maxRetries, initialBackoffMillis,
+                maxBackoffMillis, deadline, false, false);
+    }
+
+    /**
+     * @param compressRequests whether to gzip the request bodies, which the CodeScene server has to support
+     * @param respondAsync whether to ask CodeScene to run the analyses in the background, rather than to hold the
+     *                     connection open until they complete
+     */
+    public RequestPolicy(int connectTimeoutMillis, int socketTimeoutMillis, int connectionRequestTimeoutMillis,
+                         int maxRetries, long initialBackoffMillis, long maxBackoffMillis, long deadline,
+                         boolean compressRequests, boolean respondAsync) {
+        if (connectTimeoutMillis < 1 || socketTimeoutMillis < 1 || connectionRequestTimeoutMillis < 1) {
+            throw new IllegalArgumentException("Timeouts have to be positive, otherwise a hanging CodeScene server hangs the build.");
+        }
+
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("The number of retries cannot be negative. The value " + maxRetries + " is invalid.");
+        }
+
+        if (initialBackoffMillis < 1 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("The backoff between retries has to be positive and not exceed its maximum.");
+        }
+
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.deadline = deadline;
+        this.compressRequests = compressRequests;
+        this.respondAsync = respondAsync;
+    }
+
+    /**
+     * @return the same policy with another deadline, e.g. one on the clock of the build agent that sends the requests
+     */
+    public RequestPolicy withDeadline(long deadline) {
+        return new RequestPolicy(connectTimeoutMillis, socketTimeoutMillis, connectionRequestTimeoutMillis, maxRetries,
+                initialBackoffMillis, maxBackoffMillis, deadline, compressRequests, respondAsync);
+    }
+
+    public int connectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int socketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public int connectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    public long deadline() {
+        return deadline;
+    }
+
+    public boolean compressRequests() {
+        return compressRequests;
+    }
+
+    public boolean respondAsync() {
+        return respondAsync;
+    }
+
+    public long remainingMillis(long now) {
+        return deadline - now;
+    }
+
+    /**
+     * Responses worth another try: the server asks us to slow down, or has a temporary problem.
+     */
+    public boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500 && statusCode <= 599;
+    }
+
+    /**
+     * Exponential backoff with jitter, so that builds failing at the same moment don't all retry at the same moment.
+     *
+     * @param retry 1 for the first retry, 2 for the second, ...
+     * @return a delay between half and all of the exponential backoff for this retry
+     */
+    public long backoffBeforeRetry(int retry, Random random) {
+        final int doublings = Math.min(Math.max(retry - 1, 0), 30);
+        final long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << doublings);
+        final long half = backoff / 2;
+        return half + (long) (random.nextDouble() * (backoff - half));
+    }
+}
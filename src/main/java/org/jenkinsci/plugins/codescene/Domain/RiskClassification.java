@@ -1,6 +1,9 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
-public class RiskClassification {
+import java.io.Serializable;
+
+public class RiskClassification implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final int risk;
 
@@ -1,8 +1,11 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
+import java.io.Serializable;
 import java.util.List;
 
-public class Warning {
+public class Warning implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     final private WarningCategory category;
     final private List<String> details;
 
@@ -1,6 +1,10 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
-public class WarningCategory {
+import java.io.Serializable;
+
+public class WarningCategory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     final private String category;
 
     public WarningCategory(String category) {
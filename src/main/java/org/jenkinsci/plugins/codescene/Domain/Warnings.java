@@ -1,9 +1,12 @@
 package org.jenkinsci.plugins.codescene.Domain;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class Warnings {
+public class Warnings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final List<Warning> ws = new ArrayList<>();
 
     public void add(final Warning w) {
@@ -0,0 +1,65 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counts observations into fixed buckets, the way Prometheus histograms do.
+ */
+final class Histogram {
+    private final String name;
+    private final String help;
+    private final double[] upperBounds;
+    private final long[] counts;
+    private long count;
+    private double sum;
+
+    /**
+     * @param upperBounds the inclusive upper bound of each bucket, in increasing order
+     */
+    Histogram(String name, String help, double... upperBounds) {
+        this.name = name;
+        this.help = help;
+        this.upperBounds = upperBounds.clone();
+        this.counts = new long[upperBounds.length];
+        Arrays.sort(this.upperBounds);
+    }
+
+    synchronized void observe(double value) {
+        for (int i = 0; i < upperBounds.length; i++) {
+            if (value <= upperBounds[i]) {
+                counts[i]++;
+                break;
+            }
+        }
+        count++;
+        sum += value;
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    /**
+     * Appends the histogram in the Prometheus text format, with cumulative buckets.
+     */
+    synchronized void appendTo(StringBuilder out) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        long cumulative = 0;
+        for (int i = 0; i < upperBounds.length; i++) {
+            cumulative += counts[i];
+            out.append(name).append("_bucket{le=\"").append(format(upperBounds[i])).append("\"} ").append(cumulative).append('\n');
+        }
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(count).append('\n');
+        out.append(name).append("_sum ").append(format(sum)).append('\n');
+        out.append(name).append("_count ").append(count).append('\n');
+    }
+
+    static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%s", value);
+    }
+}
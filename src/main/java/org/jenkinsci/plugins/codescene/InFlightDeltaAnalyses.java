@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.DeltaAnalysisResult;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lets concurrent builds that ask for the very same delta analysis share a single HTTP call.
+ * The first caller runs the request; everybody who asks for the same analysis while it is in flight waits for that
+ * call and gets the same result, or the same failure. Nothing is kept once the call completes - that's what the
+ * {@link DeltaAnalysisCache} is for.
+ * <p>
+ * A failure that only concerns the build that sent the request, since it was aborted, ran out of time or no longer
+ * needed the analysis, isn't shared: the builds waiting for it ask again, and one of them sends the next request.
+ */
+final class InFlightDeltaAnalyses {
+    private static final ConcurrentMap<String, FutureTask<DeltaAnalysisResult>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private InFlightDeltaAnalyses() {
+    }
+
+    /**
+     * @param identity identifies the analysis, two calls with the same identity must be interchangeable
+     */
+    static DeltaAnalysisResult coalesce(String identity, Callable<DeltaAnalysisResult> request) throws IOException {
+        while (true) {
+            final FutureTask<DeltaAnalysisResult> ours = new FutureTask<>(new Leading(request));
+            final FutureTask<DeltaAnalysisResult> inFlight = IN_FLIGHT.putIfAbsent(identity, ours);
+
+            if (inFlight == null) {
+                try {
+                    ours.run();
+                } finally {
+                    IN_FLIGHT.remove(identity, ours);
+                }
+                try {
+                    return await(ours);
+                } catch (Abandoned e) {
+                    throw e.getCause();
+                }
+            }
+
+            try {
+                return await(inFlight);
+            } catch (Abandoned e) {
+                // the build we waited for gave up on the request, which doesn't mean that we have to
+                IN_FLIGHT.remove(identity, inFlight);
+            }
+        }
+    }
+
+    static int size() {
+        return IN_FLIGHT.size();
+    }
+
+    private static DeltaAnalysisResult await(FutureTask<DeltaAnalysisResult> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a delta analysis shared with another build");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Runs the request of the build that sends it, and tells its own failures apart from those of the request.
+     */
+    private static final class Leading implements Callable<DeltaAnalysisResult> {
+        private final Callable<DeltaAnalysisResult> request;
+
+        Leading(Callable<DeltaAnalysisResult> request) {
+            this.request = request;
+        }
+
+        @Override
+        public DeltaAnalysisResult call() throws Exception {
+            try {
+                return request.call();
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted() || e instanceof OutOfTimeException
+                        || e instanceof AnalysisStoppedException) {
+                    throw new Abandoned(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * The build that sent the request was aborted, ran out of time or stopped its analyses.
+     */
+    private static final class Abandoned extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Abandoned(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.jenkinsci.plugins.codescene;
+
+/**
+ * The time allotted to the CodeScene step ran out before the delta analysis completed.
+ */
+public class OutOfTimeException extends DeltaAnalysisException {
+    private static final long serialVersionUID = 1L;
+
+    public OutOfTimeException(String message, int statusCode) {
+        super(message, statusCode, false, 0);
+    }
+}
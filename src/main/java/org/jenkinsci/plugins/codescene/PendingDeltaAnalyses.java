@@ -0,0 +1,56 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.io.Serializable;
+
+/**
+ * What {@link CodeSceneDeltaAnalysisStep} returns to the Pipeline: the commits it found in the workspace, and the
+ * settings to analyse them with. {@link CodeSceneAwaitDeltaAnalysisStep} sends them to CodeScene later, outside of
+ * {@code node}.
+ * <p>
+ * Only the id of the credentials is kept, since the Pipeline stores its variables on disk.
+ */
+public final class PendingDeltaAnalyses implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String credentialsId;
+    private final String deltaAnalysisUrl;
+    private final String repository;
+    private final boolean analyzeLatestIndividually;
+    private final boolean markBuildAsUnstable;
+    private final int riskThreshold;
+    private final int couplingThresholdPercent;
+    private final int parallelism;
+    private final boolean stopAtRiskThreshold;
+    private final CodeSceneBuilder.ResolvedCommits commits;
+
+    PendingDeltaAnalyses(CodeSceneBuilder builder, CodeSceneBuilder.ResolvedCommits commits) {
+        this.credentialsId = builder.getCredentialsId();
+        this.deltaAnalysisUrl = builder.getDeltaAnalysisUrl();
+        this.repository = builder.getRepository();
+        this.analyzeLatestIndividually = builder.isAnalyzeLatestIndividually();
+        this.markBuildAsUnstable = builder.isMarkBuildAsUnstable();
+        this.riskThreshold = builder.getRiskThreshold();
+        this.couplingThresholdPercent = builder.getCouplingThresholdPercent();
+        this.parallelism = builder.getParallelism();
+        this.stopAtRiskThreshold = builder.isStopAtRiskThreshold();
+        this.commits = commits;
+    }
+
+    CodeSceneBuilder.ResolvedCommits getCommits() {
+        return commits;
+    }
+
+    /**
+     * The build step with the settings that matter once the commits are known.
+     */
+    CodeSceneBuilder toBuilder() {
+        final CodeSceneBuilder builder = new CodeSceneBuilder(credentialsId, deltaAnalysisUrl, repository);
+        builder.setAnalyzeLatestIndividually(analyzeLatestIndividually);
+        builder.setMarkBuildAsUnstable(markBuildAsUnstable);
+        builder.setRiskThreshold(riskThreshold);
+        builder.setCouplingThresholdPercent(couplingThresholdPercent);
+        builder.setParallelism(parallelism);
+        builder.setStopAtRiskThreshold(stopAtRiskThreshold);
+        return builder;
+    }
+}
@@ -0,0 +1,16 @@
+package org.jenkinsci.plugins.codescene;
+
+/**
+ * CodeScene accepted the delta analysis, but kept failing while we polled for its result. That's a failure of the
+ * server, yet it isn't retryable: a retry would submit the analysis all over again.
+ */
+public class PollFailedException extends DeltaAnalysisException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param statusCode the status of the last poll, or 0 if it didn't get an answer
+     */
+    public PollFailedException(String message, int statusCode) {
+        super(message, statusCode, false, 0);
+    }
+}
@@ -0,0 +1,22 @@
+package org.jenkinsci.plugins.codescene;
+
+/**
+ * How long to wait before each poll for the result of an analysis CodeScene runs in the background.
+ * Most analyses complete within seconds, so the first polls come quickly. The longer an analysis takes, the less
+ * often we ask, up to a maximum, unless CodeScene says when to come back.
+ */
+final class PollSchedule {
+    static final long INITIAL_MILLIS = 500;
+    static final long MAX_MILLIS = 15000;
+
+    private long next = INITIAL_MILLIS;
+
+    /**
+     * @param retryAfterMillis when the server asked us to poll again, or 0 if it didn't say
+     */
+    long nextDelay(long retryAfterMillis) {
+        final long delay = retryAfterMillis > 0 ? retryAfterMillis : next;
+        next = Math.min(MAX_MILLIS, next + next / 2);
+        return delay;
+    }
+}
@@ -0,0 +1,217 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the delta analysis requests all jobs send to one CodeScene server: how many may be in flight at once, and
+ * how many may start per minute.
+ * <p>
+ * The rate is a token bucket, which allows short bursts of up to a tenth of the per-minute rate. Requests that have to
+ * wait queue up per job, and the jobs take turns: a build with hundreds of commits to analyse gets one request through
+ * for every request of each other job waiting, instead of holding up the others until it is done.
+ */
+public class RequestThrottle {
+    private final String server;
+
+    private int maxConcurrent;
+    private int requestsPerMinute;
+
+    private int inFlight;
+    private double tokens;
+    private long refilledAt;
+    // the jobs with requests waiting, whose turn it is first
+    private final LinkedHashMap<String, Deque<Object>> waiting = new LinkedHashMap<>();
+    private int queued;
+
+    private long admitted;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    /**
+     * @param maxConcurrent the requests allowed in flight at once, 0 for no limit
+     * @param requestsPerMinute the requests allowed to start per minute, 0 for no limit
+     */
+    public RequestThrottle(String server, int maxConcurrent, int requestsPerMinute) {
+        this.server = server;
+        configure(maxConcurrent, requestsPerMinute);
+    }
+
+    public synchronized void configure(int maxConcurrent, int requestsPerMinute) {
+        if (maxConcurrent < 0 || requestsPerMinute < 0) {
+            throw new IllegalArgumentException("The limits of a request throttle cannot be negative.");
+        }
+        refill();
+        final boolean wasUnlimited = this.requestsPerMinute == 0;
+        this.maxConcurrent = maxConcurrent;
+        this.requestsPerMinute = requestsPerMinute;
+        tokens = wasUnlimited ? burst() : Math.min(tokens, burst());
+        notifyAll();
+    }
+
+    /**
+     * Waits until the job may send a request, which has to be {@link #release() released} once it completes.
+     *
+     * @param job the job sending the request, the jobs waiting take turns
+     * @return false if the request couldn't be sent within the timeout
+     */
+    public synchronized boolean acquire(String job, long timeoutMillis) throws InterruptedException {
+        final long start = now();
+        final Object ticket = new Object();
+        enqueue(job, ticket);
+        boolean granted = false;
+        try {
+            while (!isNext(job, ticket) || !hasCapacity()) {
+                final long left = timeoutMillis - (now() - start);
+                if (left <= 0) {
+                    return false;
+                }
+                wait(Math.min(left, millisUntilCapacity()));
+            }
+            admit(job, now() - start);
+            granted = true;
+            return true;
+        } finally {
+            if (!granted) {
+                // timed out or interrupted, the requests behind this one must not wait for it
+                dequeue(job, ticket);
+                notifyAll();
+            }
+        }
+    }
+
+    public synchronized void release() {
+        inFlight = Math.max(0, inFlight - 1);
+        notifyAll();
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public synchronized int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return the requests waiting, by job
+     */
+    public synchronized Map<String, Integer> getQueuedByJob() {
+        final Map<String, Integer> byJob = new TreeMap<>();
+        for (Map.Entry<String, Deque<Object>> job : waiting.entrySet()) {
+            byJob.put(job.getKey(), job.getValue().size());
+        }
+        return byJob;
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getAverageWaitMillis() {
+        return admitted == 0 ? 0 : totalWaitMillis / admitted;
+    }
+
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    protected long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void enqueue(String job, Object ticket) {
+        Deque<Object> tickets = waiting.get(job);
+        if (tickets == null) {
+            tickets = new ArrayDeque<>();
+            waiting.put(job, tickets);
+        }
+        tickets.addLast(ticket);
+        queued++;
+    }
+
+    private void dequeue(String job, Object ticket) {
+        final Deque<Object> tickets = waiting.get(job);
+        if (tickets != null && tickets.remove(ticket)) {
+            queued--;
+            if (tickets.isEmpty()) {
+                waiting.remove(job);
+            }
+        }
+    }
+
+    private boolean isNext(String job, Object ticket) {
+        final Iterator<Map.Entry<String, Deque<Object>>> jobs = waiting.entrySet().iterator();
+        if (!jobs.hasNext()) {
+            return false;
+        }
+        final Map.Entry<String, Deque<Object>> first = jobs.next();
+        return first.getKey().equals(job) && first.getValue().peekFirst() == ticket;
+    }
+
+    private void admit(String job, long waitedMillis) {
+        // the job goes to the back of the line with its other requests
+        final Deque<Object> tickets = waiting.remove(job);
+        tickets.removeFirst();
+        queued--;
+        if (!tickets.isEmpty()) {
+            waiting.put(job, tickets);
+        }
+
+        inFlight++;
+        if (requestsPerMinute > 0) {
+            tokens--;
+        }
+        admitted++;
+        totalWaitMillis += waitedMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitedMillis);
+        notifyAll();
+    }
+
+    private boolean hasCapacity() {
+        if (maxConcurrent > 0 && inFlight >= maxConcurrent) {
+            return false;
+        }
+        refill();
+        return requestsPerMinute == 0 || tokens >= 1;
+    }
+
+    /**
+     * @return how long until the next token, or a while if it's a request in flight we wait for
+     */
+    private long millisUntilCapacity() {
+        if (requestsPerMinute == 0 || tokens >= 1) {
+            return TimeUnit.SECONDS.toMillis(1);
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) * TimeUnit.MINUTES.toMillis(1) / requestsPerMinute));
+    }
+
+    private void refill() {
+        final long now = now();
+        if (requestsPerMinute > 0) {
+            tokens = Math.min(burst(), tokens + (now - refilledAt) * requestsPerMinute / (double) TimeUnit.MINUTES.toMillis(1));
+        }
+        refilledAt = now;
+    }
+
+    private double burst() {
+        return Math.max(1, requestsPerMinute / 10);
+    }
+}
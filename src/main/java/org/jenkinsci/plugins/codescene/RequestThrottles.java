@@ -0,0 +1,50 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * One {@link RequestThrottle} per CodeScene delta analysis URL, shared by all jobs on this controller.
+ */
+final class RequestThrottles {
+    private static final ConcurrentMap<String, RequestThrottle> THROTTLES = new ConcurrentHashMap<>();
+
+    private RequestThrottles() {
+    }
+
+    /**
+     * Returns the throttle for the URL, applying the current settings to it.
+     */
+    static RequestThrottle forServer(URL codeSceneUrl, int maxConcurrent, int requestsPerMinute) {
+        final String server = codeSceneUrl.toExternalForm();
+        RequestThrottle throttle = THROTTLES.get(server);
+        if (throttle == null) {
+            final RequestThrottle created = new RequestThrottle(server, maxConcurrent, requestsPerMinute);
+            throttle = THROTTLES.putIfAbsent(server, created);
+            if (throttle == null) {
+                return created;
+            }
+        }
+        throttle.configure(maxConcurrent, requestsPerMinute);
+        return throttle;
+    }
+
+    /**
+     * @return all throttles, sorted by server
+     */
+    static List<RequestThrottle> all() {
+        final List<RequestThrottle> throttles = new ArrayList<>(THROTTLES.values());
+        Collections.sort(throttles, new Comparator<RequestThrottle>() {
+            @Override
+            public int compare(RequestThrottle a, RequestThrottle b) {
+                return a.getServer().compareTo(b.getServer());
+            }
+        });
+        return throttles;
+    }
+}
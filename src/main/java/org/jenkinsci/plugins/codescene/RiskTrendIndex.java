@@ -0,0 +1,254 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.model.Job;
+import org.jenkinsci.plugins.codescene.Domain.Warning;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The delta analysis results of all builds of a job, one line per build, in a file in the job directory.
+ * <p>
+ * The trend graph and its API only read this file, never the build records, so they stay fast no matter how many
+ * builds the job has. The file is only ever appended to; what has been parsed is kept in memory and a later read only
+ * parses the lines added since.
+ * <p>
+ * Builds deleted later, by hand or as the job discards old builds, stay in the trend. It's the history of the job,
+ * and telling which builds are left would mean looking at the build records after all.
+ * <p>
+ * A line has the tab separated fields build number, timestamp, max risk, number of deltas that hit the risk threshold
+ * and the warnings counts, e.g. {@code 42	1500000000000	7	1	Modifies+Hotspot=2&Lowered+Code+Health=1}.
+ */
+class RiskTrendIndex {
+    private static final Logger LOGGER = Logger.getLogger(RiskTrendIndex.class.getName());
+
+    static final String FILE_NAME = "codescene-risk-trend.tsv";
+
+    private static final ConcurrentMap<File, RiskTrendIndex> INDICES = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final List<BuildRisk> builds = new ArrayList<>();
+    private long parsedLength;
+
+    RiskTrendIndex(File file) {
+        this.file = file;
+    }
+
+    static File fileOf(Job<?, ?> job) {
+        return new File(job.getRootDir(), FILE_NAME);
+    }
+
+    static RiskTrendIndex of(Job<?, ?> job) {
+        final File file = fileOf(job);
+        RiskTrendIndex index = INDICES.get(file);
+        if (index == null) {
+            final RiskTrendIndex created = new RiskTrendIndex(file);
+            index = INDICES.putIfAbsent(file, created);
+            if (index == null) {
+                index = created;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @see CodeSceneItemListener
+     */
+    static void forgetFilesIn(File dir) {
+        CodeSceneItemListener.forgetFilesIn(INDICES, dir);
+    }
+
+    static void forgetMissingDirectories() {
+        CodeSceneItemListener.forgetMissingDirectories(INDICES);
+    }
+
+    File file() {
+        return file;
+    }
+
+    synchronized void append(BuildRisk build) throws IOException {
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(build.toLine().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * @return the builds in the order they were added, usually ascending build numbers
+     */
+    synchronized List<BuildRisk> builds() throws IOException {
+        final long length = file.length();
+        if (length < parsedLength) {
+            // not ours to shorten, but somebody did, start over
+            builds.clear();
+            parsedLength = 0;
+        }
+        if (length > parsedLength) {
+            readFrom(parsedLength, length);
+        }
+        return Collections.unmodifiableList(new ArrayList<>(builds));
+    }
+
+    private void readFrom(long offset, long length) throws IOException {
+        final byte[] added = new byte[(int) (length - offset)];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(offset);
+            in.readFully(added);
+        }
+        int lineStart = 0;
+        for (int i = 0; i < added.length; i++) {
+            if (added[i] == '\n') {
+                final String line = new String(added, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                try {
+                    add(BuildRisk.parse(line));
+                } catch (IllegalArgumentException e) {
+                    LOGGER.log(Level.WARNING, "Skipping a malformed line in " + file + ": " + line, e);
+                }
+                lineStart = i + 1;
+            }
+        }
+        // a line still being written is read the next time
+        parsedLength = offset + lineStart;
+    }
+
+    private void add(BuildRisk build) {
+        final int last = builds.size() - 1;
+        if (last >= 0 && builds.get(last).getNumber() == build.getNumber()) {
+            // a Pipeline that ran the step more than once
+            builds.set(last, builds.get(last).plus(build));
+        } else {
+            builds.add(build);
+        }
+    }
+
+    /**
+     * The summary of the delta analyses of one build.
+     */
+    static final class BuildRisk {
+        private final int number;
+        private final long timestamp;
+        private final int maxRisk;
+        private final int thresholdHits;
+        private final Map<String, Integer> warnings;
+
+        BuildRisk(int number, long timestamp, int maxRisk, int thresholdHits, Map<String, Integer> warnings) {
+            this.number = number;
+            this.timestamp = timestamp;
+            this.maxRisk = maxRisk;
+            this.thresholdHits = thresholdHits;
+            this.warnings = Collections.unmodifiableMap(new TreeMap<>(warnings));
+        }
+
+        static BuildRisk of(int number, long timestamp, List<CodeSceneBuildAction> actions) {
+            int maxRisk = 0;
+            int thresholdHits = 0;
+            final Map<String, Integer> warnings = new TreeMap<>();
+            for (CodeSceneBuildAction action : actions) {
+                for (CodeSceneBuildActionEntry entry : action.getEntries()) {
+                    maxRisk = Math.max(maxRisk, entry.getRisk().getValue());
+                    if (entry.getHitsRiskThreshold()) {
+                        thresholdHits++;
+                    }
+                    for (Warning warning : entry.getWarnings()) {
+                        final String category = warning.getCategory().value();
+                        final Integer count = warnings.get(category);
+                        warnings.put(category, count == null ? 1 : count + 1);
+                    }
+                }
+            }
+            return new BuildRisk(number, timestamp, maxRisk, thresholdHits, warnings);
+        }
+
+        BuildRisk plus(BuildRisk other) {
+            final Map<String, Integer> sum = new TreeMap<>(warnings);
+            for (Map.Entry<String, Integer> warning : other.warnings.entrySet()) {
+                final Integer count = sum.get(warning.getKey());
+                sum.put(warning.getKey(), count == null ? warning.getValue() : count + warning.getValue());
+            }
+            return new BuildRisk(number, Math.min(timestamp, other.timestamp), Math.max(maxRisk, other.maxRisk),
+                    thresholdHits + other.thresholdHits, sum);
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        int getMaxRisk() {
+            return maxRisk;
+        }
+
+        int getThresholdHits() {
+            return thresholdHits;
+        }
+
+        Map<String, Integer> getWarnings() {
+            return warnings;
+        }
+
+        String toLine() {
+            final StringBuilder line = new StringBuilder();
+            line.append(number).append('\t').append(timestamp).append('\t')
+                    .append(maxRisk).append('\t').append(thresholdHits).append('\t');
+            String separator = "";
+            for (Map.Entry<String, Integer> warning : warnings.entrySet()) {
+                line.append(separator).append(encode(warning.getKey())).append('=').append(warning.getValue());
+                separator = "&";
+            }
+            return line.append('\n').toString();
+        }
+
+        static BuildRisk parse(String line) {
+            final String[] fields = line.split("\t", -1);
+            if (fields.length != 5) {
+                throw new IllegalArgumentException("Expected 5 fields, got " + fields.length);
+            }
+            final Map<String, Integer> warnings = new TreeMap<>();
+            if (!fields[4].isEmpty()) {
+                for (String pair : fields[4].split("&")) {
+                    final int separator = pair.lastIndexOf('=');
+                    if (separator < 1) {
+                        throw new IllegalArgumentException("Malformed warning count " + pair);
+                    }
+                    warnings.put(decode(pair.substring(0, separator)), Integer.parseInt(pair.substring(separator + 1)));
+                }
+            }
+            return new BuildRisk(Integer.parseInt(fields[0]), Long.parseLong(fields[1]),
+                    Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), warnings);
+        }
+
+        private static String encode(String s) {
+            try {
+                return URLEncoder.encode(s, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        private static String decode(String s) {
+            try {
+                return URLDecoder.decode(s, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
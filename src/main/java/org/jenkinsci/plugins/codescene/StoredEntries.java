@@ -0,0 +1,170 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.Commit;
+import org.jenkinsci.plugins.codescene.Domain.RiskClassification;
+import org.jenkinsci.plugins.codescene.Domain.Warning;
+import org.jenkinsci.plugins.codescene.Domain.WarningCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The entries of a {@link CodeSceneBuildAction}, kept in a file of their own next to build.xml.
+ * They are only needed when somebody looks at the results, so the build record stays small and quick to load.
+ * <p>
+ * The file is gzipped and compact: the warning categories are written once and referenced by index, and commits are
+ * written as 20 byte SHA-1 hashes.
+ */
+final class StoredEntries {
+    private static final Charset UTF8 = Charset.forName("UTF8");
+    private static final int MAGIC = 0x43534531; // "CSE1"
+    private static final int SHA_BYTES = 20;
+    private static final byte SHA = 0;
+    private static final byte OTHER = 1;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private StoredEntries() {
+    }
+
+    static void write(File file, List<CodeSceneBuildActionEntry> entries) throws IOException {
+        final Map<String, Integer> categories = new LinkedHashMap<>();
+        for (CodeSceneBuildActionEntry entry : entries) {
+            for (Warning warning : entry.getWarnings()) {
+                final String category = warning.getCategory().value();
+                if (!categories.containsKey(category)) {
+                    categories.put(category, categories.size());
+                }
+            }
+        }
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(categories.size());
+            for (String category : categories.keySet()) {
+                writeString(out, category);
+            }
+
+            out.writeInt(entries.size());
+            for (CodeSceneBuildActionEntry entry : entries) {
+                writeString(out, entry.getTitle());
+                out.writeBoolean(entry.getShowCommits());
+                out.writeInt(entry.getCommits().size());
+                for (Commit commit : entry.getCommits()) {
+                    writeCommit(out, commit.value());
+                }
+                out.writeInt(entry.getRisk().getValue());
+                out.writeInt(entry.getRiskThreshold());
+                out.writeBoolean(entry.getViewUrl() != null);
+                if (entry.getViewUrl() != null) {
+                    writeString(out, entry.getViewUrl().toExternalForm());
+                }
+                out.writeInt(entry.getWarnings().size());
+                for (Warning warning : entry.getWarnings()) {
+                    out.writeInt(categories.get(warning.getCategory().value()));
+                    out.writeInt(warning.getDetails().size());
+                    for (String detail : warning.getDetails()) {
+                        writeString(out, detail);
+                    }
+                }
+            }
+        }
+        if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    static List<CodeSceneBuildActionEntry> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " doesn't contain CodeScene delta analysis results");
+            }
+            final WarningCategory[] categories = new WarningCategory[in.readInt()];
+            for (int i = 0; i < categories.length; i++) {
+                // the same few categories show up in every build, so share the strings between them
+                categories[i] = new WarningCategory(readString(in).intern());
+            }
+
+            final int entryCount = in.readInt();
+            final List<CodeSceneBuildActionEntry> entries = new ArrayList<>(entryCount);
+            for (int e = 0; e < entryCount; e++) {
+                final String title = readString(in);
+                final boolean showCommits = in.readBoolean();
+                final int commitCount = in.readInt();
+                final List<Commit> commits = new ArrayList<>(commitCount);
+                for (int c = 0; c < commitCount; c++) {
+                    commits.add(new Commit(readCommit(in)));
+                }
+                final int risk = in.readInt();
+                final int riskThreshold = in.readInt();
+                final URL viewUrl = in.readBoolean() ? new URL(readString(in)) : null;
+                final int warningCount = in.readInt();
+                final List<Warning> warnings = new ArrayList<>(warningCount);
+                for (int w = 0; w < warningCount; w++) {
+                    final WarningCategory category = categories[in.readInt()];
+                    final int detailCount = in.readInt();
+                    final List<String> details = new ArrayList<>(detailCount);
+                    for (int d = 0; d < detailCount; d++) {
+                        details.add(readString(in));
+                    }
+                    warnings.add(new Warning(category, details));
+                }
+                entries.add(new CodeSceneBuildActionEntry(title, showCommits, commits, new RiskClassification(risk), warnings,
+                        viewUrl, riskThreshold));
+            }
+            return entries;
+        }
+    }
+
+    private static void writeCommit(DataOutputStream out, String hash) throws IOException {
+        if (hash.length() != SHA_BYTES * 2) {
+            // not a full SHA-1, which git doesn't hand out, but keep it as it is
+            out.writeByte(OTHER);
+            writeString(out, hash);
+            return;
+        }
+        out.writeByte(SHA);
+        for (int b = 0; b < SHA_BYTES; b++) {
+            out.writeByte(Integer.parseInt(hash.substring(b * 2, b * 2 + 2), 16));
+        }
+    }
+
+    private static String readCommit(DataInputStream in) throws IOException {
+        if (in.readByte() == OTHER) {
+            return readString(in);
+        }
+        final char[] hash = new char[SHA_BYTES * 2];
+        for (int b = 0; b < SHA_BYTES; b++) {
+            final int value = in.readUnsignedByte();
+            hash[b * 2] = HEX_DIGITS[value >>> 4];
+            hash[b * 2 + 1] = HEX_DIGITS[value & 0x0f];
+        }
+        return new String(hash);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        final byte[] bytes = s.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
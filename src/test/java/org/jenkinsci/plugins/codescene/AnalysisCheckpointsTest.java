@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.XmlFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class AnalysisCheckpointsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private XmlFile file() {
+        return new XmlFile(new File(folder.getRoot(), AnalysisCheckpoints.FILE_NAME));
+    }
+
+    @Test
+    public void hasNoCheckpointBeforeTheFirstAnalysis() {
+        assertNull(new AnalysisCheckpoints(file()).get("origin/master"));
+    }
+
+    @Test
+    public void keepsACheckpointPerBranch() {
+        final AnalysisCheckpoints checkpoints = new AnalysisCheckpoints(file());
+
+        checkpoints.advance("origin/master", null, "b75943ac51bf48ff5a206f0854ace2b67734ea66");
+        checkpoints.advance("origin/feature", null, "09822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2");
+        checkpoints.advance(null, null, "3f1c2a9d8e7b6a5f4e3d2c1b0a9f8e7d6c5b4a39");
+
+        assertEquals("b75943ac51bf48ff5a206f0854ace2b67734ea66", checkpoints.get("origin/master"));
+        assertEquals("09822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2", checkpoints.get("origin/feature"));
+        assertEquals("3f1c2a9d8e7b6a5f4e3d2c1b0a9f8e7d6c5b4a39", checkpoints.get(null));
+    }
+
+    @Test
+    public void survivesARestart() {
+        new AnalysisCheckpoints(file()).advance("origin/master", null, "b75943ac51bf48ff5a206f0854ace2b67734ea66");
+
+        assertEquals("b75943ac51bf48ff5a206f0854ace2b67734ea66", new AnalysisCheckpoints(file()).get("origin/master"));
+    }
+
+    @Test
+    public void onlyAdvancesFromTheCheckpointTheBuildStartedFrom() {
+        final AnalysisCheckpoints checkpoints = new AnalysisCheckpoints(file());
+        checkpoints.advance("origin/master", null, "b75943ac51bf48ff5a206f0854ace2b67734ea66");
+
+        // two builds start from the same checkpoint, the one of the newer commit completes first
+        assertTrue(checkpoints.advance("origin/master", "b75943ac51bf48ff5a206f0854ace2b67734ea66",
+                "3f1c2a9d8e7b6a5f4e3d2c1b0a9f8e7d6c5b4a39"));
+        assertFalse(checkpoints.advance("origin/master", "b75943ac51bf48ff5a206f0854ace2b67734ea66",
+                "09822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2"));
+        assertFalse(checkpoints.advance("origin/master", null, "09822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2"));
+
+        assertEquals("3f1c2a9d8e7b6a5f4e3d2c1b0a9f8e7d6c5b4a39", checkpoints.get("origin/master"));
+    }
+}
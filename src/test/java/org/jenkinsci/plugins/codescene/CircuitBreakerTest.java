@@ -0,0 +1,100 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    private long now = 0;
+
+    private CircuitBreaker breaker(int failureThreshold, long openMillis) {
+        return new CircuitBreaker("https://codescene.example.com/delta", failureThreshold, openMillis) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        final CircuitBreaker breaker = breaker(3, 1000);
+        breaker.recordFailure("timeout");
+        breaker.recordFailure("timeout");
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure("timeout");
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successResetsTheFailureCount() {
+        final CircuitBreaker breaker = breaker(2, 1000);
+        breaker.recordFailure("timeout");
+        breaker.recordSuccess();
+        breaker.recordFailure("timeout");
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void letsOneProbeThroughOnceTheOpenPeriodHasPassed() {
+        final CircuitBreaker breaker = breaker(1, 1000);
+        breaker.recordFailure("HTTP 503");
+
+        now = 1000;
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbeOpensTheBreakerForAnotherPeriod() {
+        final CircuitBreaker breaker = breaker(1, 1000);
+        breaker.recordFailure("HTTP 503");
+
+        now = 1500;
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure("HTTP 503");
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        now = 2000;
+        assertFalse(breaker.allowRequest());
+        now = 2500;
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void keepsTheTransitionsNewestFirst() {
+        final CircuitBreaker breaker = breaker(1, 1000);
+        breaker.recordFailure("HTTP 502");
+        breaker.reset();
+
+        assertEquals(2, breaker.getTransitions().size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getTransitions().get(0).getTo());
+        assertEquals("HTTP 502", breaker.getTransitions().get(1).getReason());
+    }
+
+    @Test
+    public void tellsWhenItRetriesOnlyWhileOpen() {
+        final CircuitBreaker breaker = breaker(1, 1000);
+        breaker.recordFailure("HTTP 503");
+        assertTrue(CodeSceneUnavailableException.of(breaker).getMessage().endsWith("until " + new Date(1000) + "."));
+
+        now = 1000;
+        assertTrue(breaker.allowRequest());
+
+        final String message = CodeSceneUnavailableException.of(breaker).getMessage();
+        assertFalse(message.contains("null"));
+        assertTrue(message.endsWith("until a probe request succeeds."));
+    }
+}
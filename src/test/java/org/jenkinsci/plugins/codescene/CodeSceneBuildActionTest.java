@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class CodeSceneBuildActionTest {
+
+    private static final Commit FIRST = new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66");
+    private static final Commit SECOND = new Commit("09822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static CodeSceneBuildActionEntry entry(int risk, List<Commit> commits, Warning... warnings) throws Exception {
+        return new CodeSceneBuildActionEntry("origin/master", true, commits, new RiskClassification(risk),
+                Arrays.asList(warnings), new URL("https://codescene.example.com/projects/1/delta/42"), 7);
+    }
+
+    private static Warning warning(String category, String... details) {
+        return new Warning(new WarningCategory(category), Arrays.asList(details));
+    }
+
+    private List<CodeSceneBuildActionEntry> roundTrip(CodeSceneBuildActionEntry... entries) throws Exception {
+        final File file = new File(folder.getRoot(), "codescene-delta.gz");
+        StoredEntries.write(file, Arrays.asList(entries));
+        return StoredEntries.read(file);
+    }
+
+    @Test
+    public void storedEntriesKeepEverything() throws Exception {
+        final CodeSceneBuildActionEntry original = entry(8, Arrays.asList(FIRST, SECOND),
+                warning("Modifies Hotspot", "src/a.clj", "src/b.clj"));
+
+        final CodeSceneBuildActionEntry restored = roundTrip(original).get(0);
+
+        assertEquals("origin/master", restored.getTitle());
+        assertTrue(restored.getShowCommits());
+        assertEquals(FIRST.value(), restored.getCommits().get(0).value());
+        assertEquals(SECOND.value(), restored.getCommits().get(1).value());
+        assertEquals(8, restored.getRisk().getValue());
+        assertEquals(7, restored.getRiskThreshold());
+        assertEquals(original.getViewUrl(), restored.getViewUrl());
+        assertEquals("Modifies Hotspot", restored.getWarnings().get(0).getCategory().value());
+        assertEquals(Arrays.asList("src/a.clj", "src/b.clj"), restored.getWarnings().get(0).getDetails());
+    }
+
+    @Test
+    public void entriesShareTheirCategories() throws Exception {
+        final List<CodeSceneBuildActionEntry> restored = roundTrip(
+                entry(3, Collections.singletonList(FIRST), warning("Low Cohesion", "src/a.clj")),
+                entry(4, Collections.singletonList(SECOND), warning("Low Cohesion", "src/b.clj")));
+
+        assertSame(restored.get(0).getWarnings().get(0).getCategory(), restored.get(1).getWarnings().get(0).getCategory());
+    }
+
+    @Test
+    public void keepsAbbreviatedHashesAsTheyAre() throws Exception {
+        final CodeSceneBuildActionEntry restored = roundTrip(entry(1, Collections.singletonList(new Commit("b75943a")))).get(0);
+
+        assertEquals("b75943a", restored.getCommits().get(0).value());
+    }
+
+    @Test
+    public void summarizesTheEntriesBeforeTheyAreStored() throws Exception {
+        final CodeSceneBuildAction action = new CodeSceneBuildAction("Delta - Individual Commits", Arrays.asList(
+                entry(3, Collections.singletonList(FIRST)),
+                entry(9, Collections.singletonList(SECOND))));
+
+        assertEquals(2, action.getEntryCount());
+        assertEquals(9, action.getMaxRisk());
+        assertTrue(action.getHitsRiskThreshold());
+        assertEquals(2, action.getEntries().size());
+    }
+
+    @Test
+    public void showsTheRiskiestEntriesOnTheBuildPage() throws Exception {
+        final List<CodeSceneBuildActionEntry> entries = new ArrayList<>();
+        for (int risk : new int[]{2, 8, 5, 10, 1, 8, 3}) {
+            entries.add(entry(risk, Collections.singletonList(FIRST)));
+        }
+        final CodeSceneBuildAction action = new CodeSceneBuildAction("Delta - Individual Commits", entries);
+
+        final List<CodeSceneBuildActionEntry> summary = action.getSummaryEntries();
+
+        assertEquals(CodeSceneBuildAction.SUMMARY_ENTRIES, summary.size());
+        assertEquals(10, summary.get(0).getRisk().getValue());
+        assertSame(entries.get(1), summary.get(1));
+        assertSame(entries.get(5), summary.get(2));
+        assertEquals(3, summary.get(4).getRisk().getValue());
+        assertTrue(action.getHasMoreEntries());
+    }
+
+    @Test
+    public void hasItsOwnPage() {
+        final CodeSceneBuildAction action = new CodeSceneBuildAction("Delta - By Branch",
+                Collections.<CodeSceneBuildActionEntry>emptyList());
+
+        assertEquals("codescene-delta-by-branch", action.getUrlName());
+        assertSame(action, action.getTarget());
+        assertFalse(action.getHasMoreEntries());
+    }
+
+    @Test
+    public void takesANameOfItsOwnWithinTheBuild() {
+        final Set<String> taken = new HashSet<>();
+
+        assertEquals("codescene-delta-by-branch", CodeSceneBuildAction.uniqueName("codescene-delta-by-branch", taken));
+        taken.add("codescene-delta-by-branch");
+        assertEquals("codescene-delta-by-branch-2", CodeSceneBuildAction.uniqueName("codescene-delta-by-branch", taken));
+        taken.add("codescene-delta-by-branch-2");
+        assertEquals("codescene-delta-by-branch-3", CodeSceneBuildAction.uniqueName("codescene-delta-by-branch", taken));
+    }
+}
@@ -0,0 +1,128 @@
+package org.jenkinsci.plugins.codescene;
+
+import com.cloudbees.plugins.credentials.CredentialsScope;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.Result;
+import hudson.model.queue.QueueTaskFuture;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Many concurrent freestyle builds going through the whole {@link CodeSceneBuilder#perform} flow, from resolving the
+ * commits in a git workspace to publishing the results, against a local CodeScene stub.
+ * Not part of the regular test run: <code>mvn test -P load-tests</code>. Takes the same system properties as
+ * {@link DeltaAnalysisLoadBenchmark}, where <code>codescene.load.analysesPerBuild</code> is the number of new commits
+ * each build analyses.
+ */
+public class CodeSceneBuilderLoadBenchmark {
+    private static final int BUILDS = Integer.getInteger("codescene.load.builds", 50);
+    private static final int COMMITS_PER_BUILD = Integer.getInteger("codescene.load.analysesPerBuild", 10);
+    private static final int LATENCY_MILLIS = Integer.getInteger("codescene.load.latencyMillis", 50);
+    private static final int ERROR_RATE_PERCENT = Integer.getInteger("codescene.load.errorRatePercent", 0);
+    private static final int WARNINGS = Integer.getInteger("codescene.load.warnings", 10);
+
+    @Rule
+    public JenkinsRule j = new JenkinsRule();
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubCodeSceneServer codeScene;
+
+    @Before
+    public void startCodeScene() throws Exception {
+        codeScene = new StubCodeSceneServer(LATENCY_MILLIS, ERROR_RATE_PERCENT / 100.0, WARNINGS);
+    }
+
+    @After
+    public void stopCodeScene() {
+        codeScene.close();
+    }
+
+    @Test
+    public void concurrentBuildsRunningTheBuildStep() throws Exception {
+        final File repository = folder.newFolder("repository");
+        final List<RevCommit> commits = commitsIn(repository, COMMITS_PER_BUILD + 1);
+        j.jenkins.getGlobalNodeProperties().add(new EnvironmentVariablesNodeProperty(
+                new EnvironmentVariablesNodeProperty.Entry("GIT_PREVIOUS_SUCCESSFUL_COMMIT", commits.get(0).getName()),
+                new EnvironmentVariablesNodeProperty.Entry("GIT_COMMIT", commits.get(commits.size() - 1).getName()),
+                new EnvironmentVariablesNodeProperty.Entry("GIT_BRANCH", "origin/master")));
+        SystemCredentialsProvider.getInstance().getCredentials().add(
+                new UsernamePasswordCredentialsImpl(CredentialsScope.GLOBAL, "codescene", "", "bot", "secret"));
+        j.jenkins.setNumExecutors(BUILDS);
+
+        final CodeSceneBuilder.DescriptorImpl descriptor = j.jenkins.getDescriptorByType(CodeSceneBuilder.DescriptorImpl.class);
+        // every build has to reach CodeScene
+        descriptor.setResultCacheSize(0);
+        descriptor.resultCache().configure(0, descriptor.getResultCacheMaxAgeHours());
+        descriptor.setCircuitBreakerFailureThreshold(Integer.MAX_VALUE);
+        descriptor.setInitialRetryDelayMillis(100);
+
+        final List<FreeStyleProject> projects = new ArrayList<>(BUILDS);
+        for (int i = 0; i < BUILDS; i++) {
+            final FreeStyleProject project = j.createFreeStyleProject("load-" + i);
+            project.setCustomWorkspace(repository.getAbsolutePath());
+            // a repository per project, so that concurrent builds don't share requests
+            final CodeSceneBuilder builder = new CodeSceneBuilder("codescene", codeScene.deltaAnalysisUrl().toExternalForm(), "repository-" + i);
+            builder.setAnalyzeLatestIndividually(true);
+            builder.setParallelism(descriptor.getMaxParallelism());
+            project.getBuildersList().add(builder);
+            projects.add(project);
+        }
+
+        final LoadStatistics statistics = new LoadStatistics();
+        statistics.start();
+        try {
+            final List<QueueTaskFuture<FreeStyleBuild>> builds = new ArrayList<>(BUILDS);
+            for (FreeStyleProject project : projects) {
+                builds.add(project.scheduleBuild2(0));
+            }
+            for (QueueTaskFuture<FreeStyleBuild> scheduled : builds) {
+                final FreeStyleBuild build = scheduled.get(10, TimeUnit.MINUTES);
+                if (build.getResult() == Result.SUCCESS) {
+                    statistics.recordSuccess(TimeUnit.MILLISECONDS.toNanos(build.getDuration()));
+                } else {
+                    statistics.recordFailure();
+                }
+            }
+        } finally {
+            statistics.stop();
+        }
+
+        System.out.print(statistics.report(String.format(
+                "CodeSceneBuilder.perform: %d builds x %d commits, %d ms latency, %d%% errors, %d warnings per result",
+                BUILDS, COMMITS_PER_BUILD, LATENCY_MILLIS, ERROR_RATE_PERCENT, WARNINGS)));
+        System.out.format("  stub:       %d requests, %d answered with 503%n", codeScene.requests(), codeScene.failures());
+
+        if (ERROR_RATE_PERCENT == 0) {
+            assertEquals(0, statistics.failures());
+            assertEquals(BUILDS * COMMITS_PER_BUILD, codeScene.requests());
+        }
+    }
+
+    private static List<RevCommit> commitsIn(File directory, int count) throws Exception {
+        final List<RevCommit> commits = new ArrayList<>(count);
+        try (Git git = Git.init().setDirectory(directory).call()) {
+            for (int i = 0; i < count; i++) {
+                commits.add(git.commit().setMessage("Commit " + i).setAuthor("CodeScene", "bot@example.com").call());
+            }
+        }
+        return commits;
+    }
+}
@@ -0,0 +1,77 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.CodeSceneUser;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CodeSceneCredentialsTest {
+
+    private static class StubCredentials extends CodeSceneCredentials {
+        final Map<String, String> passwords = new HashMap<>();
+        int lookups;
+        long now = 1500000000000L;
+
+        @Override
+        protected CodeSceneUser resolve(String credentialsId) {
+            lookups++;
+            final String password = passwords.get(credentialsId);
+            return password == null ? null : new CodeSceneUser("bot", password);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void looksUpTheCredentialsOnce() {
+        final StubCredentials credentials = new StubCredentials();
+        credentials.passwords.put("codescene", "secret");
+
+        final CodeSceneUser first = credentials.user("codescene");
+        final CodeSceneUser second = credentials.user("codescene");
+
+        assertSame(first, second);
+        assertEquals(1, credentials.lookups);
+        assertEquals("Basic Ym90OnNlY3JldA==", second.authorization());
+    }
+
+    @Test
+    public void looksUpTheCredentialsAgainOnceChanged() {
+        final StubCredentials credentials = new StubCredentials();
+        credentials.passwords.put("codescene", "secret");
+        credentials.user("codescene");
+
+        credentials.passwords.put("codescene", "rotated");
+        credentials.invalidate();
+
+        assertEquals("rotated", credentials.user("codescene").password());
+    }
+
+    @Test
+    public void looksUpTheCredentialsAgainAfterAWhile() {
+        final StubCredentials credentials = new StubCredentials();
+        credentials.passwords.put("codescene", "secret");
+        credentials.user("codescene");
+
+        credentials.now += CodeSceneCredentials.MAX_AGE_MILLIS;
+        credentials.user("codescene");
+
+        assertEquals(2, credentials.lookups);
+    }
+
+    @Test
+    public void doesNotRememberMissingCredentials() {
+        final StubCredentials credentials = new StubCredentials();
+        assertNull(credentials.user("codescene"));
+
+        credentials.passwords.put("codescene", "secret");
+
+        assertEquals("secret", credentials.user("codescene").password());
+    }
+}
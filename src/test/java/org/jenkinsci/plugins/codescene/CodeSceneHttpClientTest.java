@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.jenkinsci.plugins.codescene.Domain.ConnectionPoolSettings;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class CodeSceneHttpClientTest {
+
+    private StubCodeSceneServer codeScene;
+
+    @Before
+    public void startCodeScene() throws Exception {
+        codeScene = new StubCodeSceneServer(0, 0, 1);
+    }
+
+    @After
+    public void stopCodeScene() {
+        codeScene.close();
+        CodeSceneHttpClient.shutdown();
+    }
+
+    @Test
+    public void sharesTheClientWhileTheSettingsStayTheSame() {
+        try (CodeSceneHttpClient.Lease first = CodeSceneHttpClient.lease(new ConnectionPoolSettings(20, 10, 60, 30));
+             CodeSceneHttpClient.Lease second = CodeSceneHttpClient.lease(new ConnectionPoolSettings(20, 10, 60, 30))) {
+            assertSame(first.client(), second.client());
+        }
+    }
+
+    @Test
+    public void keepsTheOldClientOpenUntilItsAnalysesAreDone() throws Exception {
+        final CodeSceneHttpClient.Lease running = CodeSceneHttpClient.lease(new ConnectionPoolSettings(20, 10, 60, 30));
+        try (CodeSceneHttpClient.Lease changed = CodeSceneHttpClient.lease(new ConnectionPoolSettings(40, 20, 60, 30))) {
+            assertNotSame(running.client(), changed.client());
+
+            assertEquals(200, statusOf(running));
+            running.close();
+            try {
+                statusOf(running);
+                fail("The replaced client should be closed once its last lease is");
+            } catch (IllegalStateException expected) {
+                // the connection pool is shut down
+            }
+            assertEquals(200, statusOf(changed));
+        }
+    }
+
+    private int statusOf(CodeSceneHttpClient.Lease lease) throws IOException {
+        try (CloseableHttpResponse response = lease.client().execute(new HttpGet(codeScene.deltaAnalysisUrl().toExternalForm()))) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CodeSceneItemListenerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void forgetsTheFilesOfADeletedJobAndOfTheJobsInIt() throws Exception {
+        final File folderJob = folder.newFolder("jobs", "team");
+        final File nestedJob = folder.newFolder("jobs", "team", "jobs", "app");
+        final File similarlyNamed = folder.newFolder("jobs", "team-2");
+        final Map<File, String> byFile = new HashMap<>();
+        byFile.put(new File(folderJob, RiskTrendIndex.FILE_NAME), "folder");
+        byFile.put(new File(nestedJob, RiskTrendIndex.FILE_NAME), "nested");
+        byFile.put(new File(similarlyNamed, RiskTrendIndex.FILE_NAME), "other");
+
+        CodeSceneItemListener.forgetFilesIn(byFile, folderJob);
+
+        assertEquals(1, byFile.size());
+        assertEquals("other", byFile.get(new File(similarlyNamed, RiskTrendIndex.FILE_NAME)));
+    }
+
+    @Test
+    public void forgetsTheFilesOfJobsThatMoved() throws Exception {
+        final File kept = folder.newFolder("jobs", "kept");
+        final File moved = folder.newFolder("jobs", "moved");
+        final Map<File, String> byFile = new HashMap<>();
+        byFile.put(new File(kept, AnalysisCheckpoints.FILE_NAME), "kept");
+        byFile.put(new File(moved, AnalysisCheckpoints.FILE_NAME), "moved");
+
+        assertTrue(moved.renameTo(new File(moved.getParentFile(), "renamed")));
+        CodeSceneItemListener.forgetMissingDirectories(byFile);
+
+        assertEquals(1, byFile.size());
+        assertEquals("kept", byFile.get(new File(kept, AnalysisCheckpoints.FILE_NAME)));
+    }
+}
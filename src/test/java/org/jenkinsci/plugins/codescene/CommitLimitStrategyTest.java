@@ -0,0 +1,29 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommitLimitStrategyTest {
+
+    private static final List<String> NEWEST_FIRST = Arrays.asList("j", "i", "h", "g", "f", "e", "d", "c", "b", "a");
+
+    @Test
+    public void keepsTheNewestCommits() {
+        assertEquals(Arrays.asList("j", "i", "h"), CommitLimitStrategy.NEWEST.limit(NEWEST_FIRST, 3));
+    }
+
+    @Test
+    public void samplesEvenlyStartingWithTheNewestCommit() {
+        assertEquals(Arrays.asList("j", "g", "d"), CommitLimitStrategy.SAMPLE.limit(NEWEST_FIRST, 3));
+        assertEquals(Arrays.asList("j", "h", "f", "d", "b"), CommitLimitStrategy.SAMPLE.limit(NEWEST_FIRST, 5));
+    }
+
+    @Test
+    public void keepsAllCommitsForOneCombinedDelta() {
+        assertEquals(NEWEST_FIRST, CommitLimitStrategy.BRANCH_DIFF.limit(NEWEST_FIRST, 3));
+    }
+}
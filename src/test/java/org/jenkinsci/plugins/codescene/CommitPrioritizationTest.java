@@ -0,0 +1,58 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.Commit;
+import org.jenkinsci.plugins.codescene.Domain.RiskClassification;
+import org.jenkinsci.plugins.codescene.Domain.Warning;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CommitPrioritizationTest {
+
+    private static CommitRangeResolver.Revision revision(String name, int filesTouched) {
+        return new CommitRangeResolver.Revision(name, filesTouched);
+    }
+
+    private static CodeSceneBuildActionEntry entry(String revision) throws Exception {
+        return new CodeSceneBuildActionEntry(revision, false, Collections.singletonList(new Commit(revision)),
+                new RiskClassification(3), Collections.<Warning>emptyList(), new URL("https://codescene.example.com/delta"), 7);
+    }
+
+    @Test
+    public void analysesTheCommitsTouchingTheMostFilesFirst() {
+        final List<String> order = CodeSceneBuilder.largestFirst(Arrays.asList(
+                revision("a", 1), revision("b", 12), revision("c", 3), revision("d", 12), revision("e", 0)));
+
+        assertEquals(Arrays.asList("b", "d", "c", "a", "e"), order);
+    }
+
+    @Test
+    public void reportsTheCommitsWithoutResultsAsNotAnalysed() throws Exception {
+        final List<String> notAnalysed = CodeSceneBuilder.notAnalysed(Arrays.asList("a", "b", "c", "d"),
+                Arrays.asList(entry("c"), entry("a")));
+
+        assertEquals(Arrays.asList("b", "d"), notAnalysed);
+    }
+
+    @Test
+    public void movesTheCheckpointOnlyOnceEveryNewCommitIsAnalysed() throws Exception {
+        final List<String> revisions = Arrays.asList("a", "b", "c");
+
+        assertEquals("a", CodeSceneBuilder.nextCheckpoint("a", false,
+                CodeSceneBuilder.notAnalysed(revisions, Arrays.asList(entry("a"), entry("b"), entry("c")))));
+        // stopped at the risk threshold
+        assertNull(CodeSceneBuilder.nextCheckpoint("a", false,
+                CodeSceneBuilder.notAnalysed(revisions, Arrays.asList(entry("b"), entry("a")))));
+        // older commits left out by the commit limit
+        assertNull(CodeSceneBuilder.nextCheckpoint("a", true,
+                CodeSceneBuilder.notAnalysed(revisions, Arrays.asList(entry("a"), entry("b"), entry("c")))));
+        assertNull(CodeSceneBuilder.nextCheckpoint("a", true,
+                CodeSceneBuilder.notAnalysed(revisions, Arrays.asList(entry("a")))));
+    }
+}
@@ -0,0 +1,103 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeltaAnalysisCacheTest {
+
+    private static final Repository GIT_REPO = new Repository("codescene-ui");
+    private static final Commit FIRST = new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66");
+    private static final Commit SECOND = new Commit("9822ac0c7e5a1dd8f6b2c44b6e2f0e5bdf0c1a2b");
+    private static final int COUPLING_THRESHOLD = 80;
+    private static final URL CODESCENE = url("http://localhost:3003/projects/1/delta-analysis");
+    private static final CodeSceneUser USER = new CodeSceneUser("bot", "secret");
+    private static final Configuration CONFIG = configWith(CODESCENE, USER, GIT_REPO, COUPLING_THRESHOLD);
+
+    private long now = 0;
+
+    private DeltaAnalysisCache cache(int maxEntries, int maxAgeHours) {
+        return new DeltaAnalysisCache(null, maxEntries, maxAgeHours) {
+            @Override
+            protected long now() {
+                return now;
+            }
+        };
+    }
+
+    private static Configuration configWith(URL codeScene, CodeSceneUser user, Repository repository, int couplingThreshold) {
+        return new Configuration(codeScene, user, repository, couplingThreshold);
+    }
+
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static DeltaAnalysisResult resultWithRisk(Commit commit, int risk) {
+        return new DeltaAnalysisResult(Commits.from(commit), "/projects/1/delta/" + commit.value(), new RiskClassification(risk), new Warnings());
+    }
+
+    @Test
+    public void returnsCachedResultForSameRepositoryCommitAndThreshold() {
+        final DeltaAnalysisCache cache = cache(10, 1);
+        cache.put(CONFIG, FIRST, resultWithRisk(FIRST, 7));
+
+        final DeltaAnalysisResult cached = cache.get(CONFIG, FIRST);
+
+        assertEquals(7, cached.getRisk().getValue());
+        assertEquals("/projects/1/delta/" + FIRST.value(), cached.getViewUrl());
+        assertNull(cache.get(configWith(CODESCENE, USER, GIT_REPO, COUPLING_THRESHOLD - 1), FIRST));
+        assertNull(cache.get(configWith(CODESCENE, USER, new Repository("other"), COUPLING_THRESHOLD), FIRST));
+    }
+
+    @Test
+    public void keepsTheResultsOfOtherServersAndUsersApart() {
+        final DeltaAnalysisCache cache = cache(10, 1);
+        cache.put(CONFIG, FIRST, resultWithRisk(FIRST, 7));
+
+        assertNull(cache.get(configWith(url("http://codescene.example.com/projects/1/delta-analysis"), USER, GIT_REPO,
+                COUPLING_THRESHOLD), FIRST));
+        assertNull(cache.get(configWith(CODESCENE, new CodeSceneUser("other bot", "secret"), GIT_REPO,
+                COUPLING_THRESHOLD), FIRST));
+        assertNotNull(cache.get(configWith(CODESCENE, USER.withoutPassword(), GIT_REPO, COUPLING_THRESHOLD), FIRST));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResultWhenFull() {
+        final DeltaAnalysisCache cache = cache(1, 1);
+        cache.put(CONFIG, FIRST, resultWithRisk(FIRST, 3));
+        cache.put(CONFIG, SECOND, resultWithRisk(SECOND, 4));
+
+        assertNull(cache.get(CONFIG, FIRST));
+        assertNotNull(cache.get(CONFIG, SECOND));
+    }
+
+    @Test
+    public void expiresResultsOlderThanMaxAge() {
+        final DeltaAnalysisCache cache = cache(10, 1);
+        cache.put(CONFIG, FIRST, resultWithRisk(FIRST, 3));
+
+        now += TimeUnit.HOURS.toMillis(1) + 1;
+
+        assertNull(cache.get(CONFIG, FIRST));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cachesNothingWhenDisabled() {
+        final DeltaAnalysisCache cache = cache(0, 1);
+        cache.put(CONFIG, FIRST, resultWithRisk(FIRST, 3));
+
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get(CONFIG, FIRST));
+    }
+}
@@ -0,0 +1,102 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Many concurrent builds sending delta analyses through {@link DeltaAnalysis#runOn} to a local CodeScene stub.
+ * Not part of the regular test run: <code>mvn test -P load-tests</code>. The load can be tuned with the system
+ * properties <code>codescene.load.builds</code>, <code>.analysesPerBuild</code>, <code>.latencyMillis</code>,
+ * <code>.errorRatePercent</code> and <code>.warnings</code>.
+ */
+public class DeltaAnalysisLoadBenchmark {
+    private static final int BUILDS = Integer.getInteger("codescene.load.builds", 50);
+    private static final int ANALYSES_PER_BUILD = Integer.getInteger("codescene.load.analysesPerBuild", 10);
+    private static final int LATENCY_MILLIS = Integer.getInteger("codescene.load.latencyMillis", 50);
+    private static final int ERROR_RATE_PERCENT = Integer.getInteger("codescene.load.errorRatePercent", 0);
+    private static final int WARNINGS = Integer.getInteger("codescene.load.warnings", 10);
+
+    private StubCodeSceneServer codeScene;
+
+    @Before
+    public void startCodeScene() throws Exception {
+        codeScene = new StubCodeSceneServer(LATENCY_MILLIS, ERROR_RATE_PERCENT / 100.0, WARNINGS);
+    }
+
+    @After
+    public void stopCodeScene() {
+        codeScene.close();
+        CodeSceneHttpClient.shutdown();
+    }
+
+    @Test
+    public void concurrentBuildsRunningDeltaAnalyses() throws Exception {
+        final CircuitBreaker breaker = new CircuitBreaker(codeScene.deltaAnalysisUrl().toExternalForm(), Integer.MAX_VALUE, 1000);
+        final LoadStatistics statistics = new LoadStatistics();
+        final ExecutorService builds = Executors.newFixedThreadPool(BUILDS);
+
+        statistics.start();
+        try {
+            final List<Future<?>> running = new ArrayList<>(BUILDS);
+            for (int build = 0; build < BUILDS; build++) {
+                running.add(builds.submit(buildAnalysing("repository-" + build, breaker, statistics)));
+            }
+            for (Future<?> build : running) {
+                build.get(10, TimeUnit.MINUTES);
+            }
+        } finally {
+            builds.shutdownNow();
+            statistics.stop();
+        }
+
+        System.out.print(statistics.report(String.format(
+                "DeltaAnalysis.runOn: %d builds x %d analyses, %d ms latency, %d%% errors, %d warnings per result",
+                BUILDS, ANALYSES_PER_BUILD, LATENCY_MILLIS, ERROR_RATE_PERCENT, WARNINGS)));
+        System.out.format("  stub:       %d requests, %d answered with 503%n", codeScene.requests(), codeScene.failures());
+
+        if (ERROR_RATE_PERCENT == 0) {
+            assertEquals(0, statistics.failures());
+            assertEquals(BUILDS * ANALYSES_PER_BUILD, codeScene.requests());
+        }
+    }
+
+    private Callable<Void> buildAnalysing(final String repository, final CircuitBreaker breaker, final LoadStatistics statistics) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                final Configuration config = new Configuration(codeScene.deltaAnalysisUrl(), new CodeSceneUser("bot", "secret"),
+                        new Repository(repository), 80);
+                final RequestPolicy policy = new RequestPolicy(10000, 60000, 60000, 3, 100, 2000,
+                        System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10));
+                try (CodeSceneHttpClient.Lease httpClient = CodeSceneHttpClient.lease(new ConnectionPoolSettings(20, 10, 60, 30))) {
+                    final DeltaAnalysis analysis = new DeltaAnalysis(config, httpClient.client(), policy, breaker, TaskListener.NULL);
+
+                    for (int i = 0; i < ANALYSES_PER_BUILD; i++) {
+                        final Commits commits = Commits.from(new Commit(String.format("%040x", i + 1)));
+                        final long start = System.nanoTime();
+                        try {
+                            assertNotNull(analysis.runOn(commits));
+                            statistics.recordSuccess(System.nanoTime() - start);
+                        } catch (Exception e) {
+                            statistics.recordFailure();
+                        }
+                    }
+                }
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeltaAnalysisMetricsTest {
+
+    private static DeltaAnalysisResult resultWithRisk(int risk, int warnings) {
+        final Warnings ws = new Warnings();
+        for (int i = 0; i < warnings; i++) {
+            ws.add(new Warning(new WarningCategory("Modifies Hotspot " + i), Collections.singletonList("src/a.clj")));
+        }
+        return new DeltaAnalysisResult(Commits.from(new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66")), "/view",
+                new RiskClassification(risk), ws);
+    }
+
+    @Test
+    public void histogramBucketsAreCumulative() {
+        final Histogram histogram = new Histogram("latency_seconds", "Latency.", 0.1, 1);
+        histogram.observe(0.0625);
+        histogram.observe(0.5);
+        histogram.observe(5);
+
+        final StringBuilder out = new StringBuilder();
+        histogram.appendTo(out);
+
+        final String text = out.toString();
+        assertTrue(text.contains("# TYPE latency_seconds histogram\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"0.1\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"1\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_sum 5.5625\n"));
+        assertTrue(text.contains("latency_seconds_count 3\n"));
+    }
+
+    @Test
+    public void countsRisksWarningsAndFailures() {
+        final DeltaAnalysisMetrics metrics = new DeltaAnalysisMetrics();
+        metrics.resultParsed(resultWithRisk(7, 2), 2048, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.resultParsed(resultWithRisk(7, 0), 512, TimeUnit.MILLISECONDS.toNanos(1));
+        metrics.requestFailed("503");
+        metrics.requestFailed("503");
+        metrics.requestFailed("SocketTimeoutException");
+        metrics.cacheHit();
+
+        final String text = metrics.asPrometheusText();
+
+        assertTrue(text.contains("codescene_delta_analysis_risk_total{risk=\"7\"} 2\n"));
+        assertTrue(text.contains("codescene_delta_analysis_risk_total{risk=\"1\"} 0\n"));
+        assertTrue(text.contains("codescene_delta_analysis_risk_total{risk=\"0\"} 0\n"));
+        assertTrue(text.contains("codescene_delta_analysis_warnings_bucket{le=\"0\"} 1\n"));
+        assertTrue(text.contains("codescene_delta_analysis_response_bytes_sum 2560\n"));
+        assertTrue(text.contains("codescene_delta_analysis_failures_total{reason=\"503\"} 2\n"));
+        assertTrue(text.contains("codescene_delta_analysis_failures_total{reason=\"SocketTimeoutException\"} 1\n"));
+        assertTrue(text.contains("codescene_delta_analysis_cache_hits_total 1\n"));
+    }
+
+    @Test
+    public void keepsAnalysesWithoutRisk() {
+        final DeltaAnalysisMetrics metrics = new DeltaAnalysisMetrics();
+        metrics.resultParsed(resultWithRisk(0, 0), 256, TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertTrue(metrics.asPrometheusText().contains("codescene_delta_analysis_risk_total{risk=\"0\"} 1\n"));
+    }
+
+    @Test
+    public void countsTheBytesCompressionSaved() {
+        final DeltaAnalysisMetrics metrics = new DeltaAnalysisMetrics();
+        metrics.bodyTransferred("request", 4000, 600);
+        metrics.bodyTransferred("request", 1000, 200);
+        metrics.bodyTransferred("response", 3000, 3000);
+
+        final String text = metrics.asPrometheusText();
+
+        assertTrue(text.contains("codescene_delta_analysis_body_bytes_total{direction=\"request\"} 5000\n"));
+        assertTrue(text.contains("codescene_delta_analysis_wire_bytes_total{direction=\"request\"} 800\n"));
+        assertTrue(text.contains("codescene_delta_analysis_wire_bytes_total{direction=\"response\"} 3000\n"));
+    }
+}
@@ -0,0 +1,266 @@
+package org.jenkinsci.plugins.codescene;
+
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class DeltaAnalysisTest {
+
+    private static final Commits COMMITS = Commits.from(new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66"));
+
+    private StubCodeSceneServer codeScene;
+    private CircuitBreaker breaker;
+    private CodeSceneHttpClient.Lease httpClient;
+
+    @Before
+    public void startCodeScene() throws Exception {
+        codeScene = new StubCodeSceneServer(0, 0, 2);
+        breaker = new CircuitBreaker(codeScene.deltaAnalysisUrl().toExternalForm(), Integer.MAX_VALUE, 1000);
+        httpClient = CodeSceneHttpClient.lease(new ConnectionPoolSettings(20, 10, 60, 30));
+    }
+
+    @After
+    public void stopCodeScene() {
+        httpClient.close();
+        codeScene.close();
+        CodeSceneHttpClient.shutdown();
+    }
+
+    @Test
+    public void pollsForTheResultOfAnAnalysisInTheBackground() throws Exception {
+        codeScene.runInBackground(2);
+
+        final DeltaAnalysisResult result = analysis(TimeUnit.MINUTES.toMillis(1), 3).runOn(COMMITS);
+
+        assertEquals("/projects/1/delta/42", result.getViewUrl());
+        assertEquals(1, codeScene.requests());
+        assertEquals(3, codeScene.polls());
+        assertEquals(0, codeScene.cancellations());
+    }
+
+    @Test
+    public void pollsAgainInsteadOfSubmittingAgainWhenAPollFails() throws Exception {
+        codeScene.runInBackground(0).failPolls(1);
+
+        assertNotNull(analysis(TimeUnit.MINUTES.toMillis(1), 3).runOn(COMMITS));
+
+        assertEquals(1, codeScene.requests());
+        assertEquals(2, codeScene.polls());
+    }
+
+    @Test
+    public void opensTheCircuitWhenCodeSceneGoesDownWhileItRunsTheAnalysis() throws Exception {
+        codeScene.runInBackground(2).goDownAfterSubmit();
+        breaker = new CircuitBreaker(codeScene.deltaAnalysisUrl().toExternalForm(), 1, TimeUnit.MINUTES.toMillis(1));
+
+        try {
+            analysis(TimeUnit.MINUTES.toMillis(1), 1).runOn(COMMITS);
+            fail("Expected the analysis to fail");
+        } catch (PollFailedException e) {
+            assertFalse(e.isRetryable());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void givesUpOnTheAnalysisWhenThePollsKeepFailing() throws Exception {
+        codeScene.runInBackground(0).failPolls(10);
+
+        try {
+            analysis(TimeUnit.MINUTES.toMillis(1), 1).runOn(COMMITS);
+            fail("Expected the analysis to fail");
+        } catch (PollFailedException e) {
+            assertFalse(e.isRetryable());
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(1, breaker.getConsecutiveFailures());
+        assertEquals(1, codeScene.requests());
+        assertEquals(2, codeScene.polls());
+        assertEquals(1, codeScene.cancellations());
+    }
+
+    @Test
+    public void cancelsTheAnalysisWhenTheTimeRunsOut() throws Exception {
+        codeScene.runInBackground(100);
+
+        try {
+            analysis(1000, 3).runOn(COMMITS);
+            fail("Expected the analysis to run out of time");
+        } catch (OutOfTimeException expected) {
+            // the polls would have gone on after the deadline
+        }
+        assertEquals(1, codeScene.requests());
+        assertEquals(1, codeScene.cancellations());
+    }
+
+    @Test
+    public void cancelsTheAnalysisWhenTheBuildIsAborted() throws Exception {
+        codeScene.runInBackground(100);
+        final DeltaAnalysis analysis = analysis(TimeUnit.MINUTES.toMillis(1), 3);
+        final IOException[] failure = new IOException[1];
+        final Thread build = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    analysis.runOn(COMMITS);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        build.start();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (codeScene.polls() == 0) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("The analysis never polled for its result");
+            }
+            Thread.sleep(1);
+        }
+        build.interrupt();
+        build.join(10000);
+
+        assertFalse(build.isAlive());
+        assertNotNull("The aborted analysis should fail", failure[0]);
+        assertEquals(1, codeScene.cancellations());
+    }
+
+    @Test
+    public void gzipsTheRequestAndTheResponse() throws Exception {
+        codeScene.gzipResponses();
+
+        final DeltaAnalysisResult result = analysis(TimeUnit.MINUTES.toMillis(1), 3, true).runOn(COMMITS);
+
+        assertEquals("gzip", codeScene.lastRequestEncoding());
+        assertTrue(codeScene.lastRequestBody().contains("b75943ac51bf48ff5a206f0854ace2b67734ea66"));
+        assertEquals("/projects/1/delta/42", result.getViewUrl());
+        assertEquals(2, result.getWarnings().value().size());
+    }
+
+    @Test
+    public void sendsTheRequestAsIsUnlessToldToGzipIt() throws Exception {
+        analysis(TimeUnit.MINUTES.toMillis(1), 3, false).runOn(COMMITS);
+
+        assertNull(codeScene.lastRequestEncoding());
+        assertTrue(codeScene.lastRequestBody().contains("b75943ac51bf48ff5a206f0854ace2b67734ea66"));
+    }
+
+    @Test
+    public void decompressesTheReasonOfAFailure() throws Exception {
+        codeScene.close();
+        codeScene = new StubCodeSceneServer(0, 1, 2).gzipResponses();
+
+        try {
+            analysis(TimeUnit.MINUTES.toMillis(1), 0, true).runOn(COMMITS);
+            fail("Expected the analysis to fail");
+        } catch (DeltaAnalysisException e) {
+            assertEquals(503, e.getStatusCode());
+            assertTrue(e.getMessage().contains("CodeScene is temporarily overloaded"));
+        }
+    }
+
+    @Test
+    public void sendsNoRequestOnceStopped() throws Exception {
+        assertNull(analysis(TimeUnit.MINUTES.toMillis(1), 3).runOnUnless(COMMITS, new AtomicBoolean(true)));
+
+        assertEquals(0, codeScene.requests());
+    }
+
+    @Test
+    public void givesUpTheThrottleWhileItWaitsToPoll() throws Exception {
+        codeScene.runInBackground(1);
+        final RequestThrottle throttle = new RequestThrottle(codeScene.deltaAnalysisUrl().toExternalForm(), 1, 0);
+        final DeltaAnalysis analysis = analysis(TimeUnit.MINUTES.toMillis(1), 3, false, throttle);
+        final DeltaAnalysisResult[] result = new DeltaAnalysisResult[1];
+        final Thread build = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = analysis.runOn(COMMITS);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        build.start();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (codeScene.requests() == 0) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("The analysis was never submitted");
+            }
+            Thread.sleep(1);
+        }
+        // the first poll is half a second away, and another job may send its request meanwhile
+        assertTrue(throttle.acquire("other job", 400));
+        throttle.release();
+
+        build.join(TimeUnit.SECONDS.toMillis(10));
+        assertNotNull(result[0]);
+        assertEquals(2, codeScene.polls());
+        assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    public void dropsARequestStoppedWhileItWaitedForTheThrottle() throws Exception {
+        final RequestThrottle throttle = new RequestThrottle(codeScene.deltaAnalysisUrl().toExternalForm(), 1, 0);
+        assertTrue(throttle.acquire("other job", 0));
+        final DeltaAnalysis analysis = analysis(TimeUnit.MINUTES.toMillis(1), 3, false, throttle);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final DeltaAnalysisResult[] result = new DeltaAnalysisResult[1];
+        final IOException[] failure = new IOException[1];
+        final Thread build = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = analysis.runOnUnless(COMMITS, stop);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        build.start();
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (throttle.getQueued() == 0) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("The analysis never waited for the throttle");
+            }
+            Thread.sleep(1);
+        }
+        stop.set(true);
+        throttle.release();
+        build.join(10000);
+
+        assertFalse(build.isAlive());
+        assertNull(failure[0]);
+        assertNull(result[0]);
+        assertEquals(0, codeScene.requests());
+        assertEquals(0, throttle.getInFlight());
+    }
+
+    private DeltaAnalysis analysis(long millisAllotted, int maxRetries) throws IOException {
+        return analysis(millisAllotted, maxRetries, false);
+    }
+
+    private DeltaAnalysis analysis(long millisAllotted, int maxRetries, boolean compressRequests) throws IOException {
+        return analysis(millisAllotted, maxRetries, compressRequests, null);
+    }
+
+    private DeltaAnalysis analysis(long millisAllotted, int maxRetries, boolean compressRequests,
+                                   RequestThrottle throttle) throws IOException {
+        final Configuration config = new Configuration(codeScene.deltaAnalysisUrl(), new CodeSceneUser("bot", "secret"),
+                new Repository("codescene-jenkins-plugin"), 80);
+        final RequestPolicy policy = new RequestPolicy(10000, 10000, 10000, maxRetries, 100, 2000,
+                System.currentTimeMillis() + millisAllotted, compressRequests, true);
+        return new DeltaAnalysis(config, httpClient.client(), policy, breaker, throttle, "job", TaskListener.NULL);
+    }
+}
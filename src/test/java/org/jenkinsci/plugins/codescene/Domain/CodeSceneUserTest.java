@@ -16,4 +16,12 @@ public class CodeSceneUserTest {
         // Dobule checked with https://www.base64encode.org/
         assertEquals("Qm90OkJvdFBhc3N3b3Jk", user.asBase64Encoded());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void keepsTheAuthorizationWithoutThePassword() {
+        final CodeSceneUser user = new CodeSceneUser("Bot", "BotPassword").withoutPassword();
+
+        assertNull(user.password());
+        assertEquals("Basic Qm90OkJvdFBhc3N3b3Jk", user.authorization());
+    }
+}
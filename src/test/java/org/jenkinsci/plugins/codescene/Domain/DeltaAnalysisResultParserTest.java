@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeltaAnalysisResultParserTest {
+
+    private static final Commits COMMITS = Commits.from(new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66"));
+
+    private static InputStream json(String s) {
+        return new ByteArrayInputStream(s.replace('\'', '"').getBytes(Charset.forName("UTF8")));
+    }
+
+    @Test
+    public void parsesRiskViewAndWarnings() {
+        final DeltaAnalysisResult result = DeltaAnalysisResultParser.parse(COMMITS, json(
+                "{'version':'1','view':'/projects/2/delta/42'," +
+                        "'result':{'risk':8,'warnings':[" +
+                        "{'category':'Modifies Hotspot','details':['src/a.clj','src/b.clj']}," +
+                        "{'category':'Absence of Expected Change Pattern','details':['src/c.clj']}]}}"));
+
+        assertEquals("/projects/2/delta/42", result.getViewUrl());
+        assertEquals(8, result.getRisk().getValue());
+
+        final List<Warning> warnings = result.getWarnings().value();
+        assertEquals(2, warnings.size());
+        assertEquals("Modifies Hotspot", warnings.get(0).getCategory().value());
+        assertEquals(Arrays.asList("src/a.clj", "src/b.clj"), warnings.get(0).getDetails());
+        assertEquals("Absence of Expected Change Pattern", warnings.get(1).getCategory().value());
+        assertEquals(Arrays.asList("src/c.clj"), warnings.get(1).getDetails());
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        final DeltaAnalysisResult result = DeltaAnalysisResultParser.parse(COMMITS, json(
+                "{'id':17,'meta':{'nested':[1,{'deeper':[]}]},'version':'1','view':'/v'," +
+                        "'result':{'description':'ok','quality-gates':{'fails':[]},'risk':2,'warnings':[]}}"));
+
+        assertEquals(2, result.getRisk().getValue());
+        assertTrue(result.getWarnings().value().isEmpty());
+    }
+
+    @Test
+    public void stopsAtUnsupportedVersion() {
+        try {
+            // the rest of the document is deliberately broken, we must never get that far
+            DeltaAnalysisResultParser.parse(COMMITS, json("{'version':'2','result': this is not json"));
+            fail("Expected the unsupported version to be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("version 2"));
+        }
+    }
+}
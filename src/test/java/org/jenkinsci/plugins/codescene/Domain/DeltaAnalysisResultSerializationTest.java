@@ -0,0 +1,75 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The results of analyses run on a build agent come back to the controller through remoting.
+ */
+public class DeltaAnalysisResultSerializationTest {
+
+    @SuppressWarnings("unchecked")
+    private static <T> T roundTrip(T value) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (T) in.readObject();
+        }
+    }
+
+    @Test
+    public void survivesTheTripFromTheAgent() throws Exception {
+        final Commits commits = Commits.from(new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66"));
+        final Warnings warnings = new Warnings();
+        warnings.add(new Warning(new WarningCategory("Modifies Hotspot"), new ArrayList<>(Arrays.asList("src/a.clj", "src/b.clj"))));
+        final DeltaAnalysisResult result = new DeltaAnalysisResult(commits, "/projects/2/delta/42", new RiskClassification(8), warnings);
+
+        final DeltaAnalysisResult copy = roundTrip(result);
+
+        assertEquals("/projects/2/delta/42", copy.getViewUrl());
+        assertEquals(8, copy.getRisk().getValue());
+        assertEquals("b75943ac51bf48ff5a206f0854ace2b67734ea66", copy.getCommits().value().get(0).value());
+        assertEquals("Modifies Hotspot", copy.getWarnings().value().get(0).getCategory().value());
+        assertEquals(Arrays.asList("src/a.clj", "src/b.clj"), copy.getWarnings().value().get(0).getDetails());
+    }
+
+    @Test
+    public void sendsTheConfigurationToTheAgent() throws Exception {
+        final Configuration config = roundTrip(new Configuration(new URL("https://codescene.example.com/projects/2/delta-analysis"),
+                new CodeSceneUser("bot", "secret"), new Repository("codescene-ui"), 75));
+        final RequestPolicy policy = roundTrip(new RequestPolicy(1000, 2000, 3000, 2, 100, 800, 1500000000000L));
+
+        assertEquals(new URL("https://codescene.example.com/projects/2/delta-analysis"), config.codeSceneUrl());
+        assertEquals("Ym90OnNlY3JldA==", config.user().asBase64Encoded());
+        assertEquals("codescene-ui", config.gitRepisitoryToAnalyze().value());
+        assertEquals(75, config.couplingThresholdPercent());
+        assertEquals(2000, policy.socketTimeoutMillis());
+        assertEquals(2, policy.maxRetries());
+        assertEquals(1500000000000L, policy.deadline());
+    }
+
+    @Test
+    public void sendsTheAgentTheAuthorizationButNotThePassword() throws Exception {
+        final Configuration config = new Configuration(new URL("https://codescene.example.com/projects/2/delta-analysis"),
+                new CodeSceneUser("bot", "secret"), new Repository("codescene-ui"), 75);
+
+        final Configuration copy = roundTrip(config.withoutPassword());
+
+        assertNull(copy.user().password());
+        assertEquals("bot", copy.user().name());
+        assertEquals("Basic Ym90OnNlY3JldA==", copy.user().authorization());
+        assertEquals("codescene-ui", copy.gitRepisitoryToAnalyze().value());
+    }
+}
@@ -0,0 +1,67 @@
+package org.jenkinsci.plugins.codescene.Domain;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RequestPolicyTest {
+
+    private static RequestPolicy withBackoff(long initial, long max) {
+        return new RequestPolicy(1000, 1000, 1000, 3, initial, max, 10000);
+    }
+
+    @Test
+    public void backoffGrowsExponentiallyWithinJitterBounds() {
+        final RequestPolicy policy = withBackoff(100, 100000);
+        final Random random = new Random(42);
+        for (int retry = 1; retry <= 5; retry++) {
+            final long full = 100L << (retry - 1);
+            for (int i = 0; i < 100; i++) {
+                final long backoff = policy.backoffBeforeRetry(retry, random);
+                assertTrue(backoff >= full / 2);
+                assertTrue(backoff <= full);
+            }
+        }
+    }
+
+    @Test
+    public void backoffIsCappedAtTheMaximum() {
+        final RequestPolicy policy = withBackoff(1000, 5000);
+        assertTrue(policy.backoffBeforeRetry(40, new Random(1)) <= 5000);
+    }
+
+    @Test
+    public void retriesThrottlingAndServerErrorsOnly() {
+        final RequestPolicy policy = withBackoff(100, 1000);
+        assertTrue(policy.isRetryable(429));
+        assertTrue(policy.isRetryable(503));
+        assertFalse(policy.isRetryable(400));
+        assertFalse(policy.isRetryable(401));
+        assertFalse(policy.isRetryable(404));
+    }
+
+    @Test
+    public void remainingTimeCountsDownToTheDeadline() {
+        final RequestPolicy policy = withBackoff(100, 1000);
+        assertEquals(4000, policy.remainingMillis(6000));
+        assertTrue(policy.remainingMillis(12000) < 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeRetries() {
+        new RequestPolicy(1000, 1000, 1000, -1, 100, 1000, 10000);
+    }
+
+    @Test
+    public void movesTheDeadlineOnly() {
+        final RequestPolicy policy = new RequestPolicy(1000, 2000, 3000, 2, 100, 800, 10000, true, true).withDeadline(25000);
+
+        assertEquals(25000, policy.deadline());
+        assertEquals(2000, policy.socketTimeoutMillis());
+        assertEquals(2, policy.maxRetries());
+        assertTrue(policy.compressRequests());
+        assertTrue(policy.respondAsync());
+    }
+}
@@ -0,0 +1,202 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.jenkinsci.plugins.codescene.Domain.*;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class InFlightDeltaAnalysesTest {
+
+    private static final Commit COMMIT = new Commit("b75943ac51bf48ff5a206f0854ace2b67734ea66");
+
+    @Test
+    public void concurrentCallsWithSameIdentityShareOneRequest() throws Exception {
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        final Callable<DeltaAnalysisResult> request = new Callable<DeltaAnalysisResult>() {
+            @Override
+            public DeltaAnalysisResult call() throws Exception {
+                requests.incrementAndGet();
+                requestStarted.countDown();
+                releaseRequest.await();
+                return new DeltaAnalysisResult(Commits.from(COMMIT), "/view", new RiskClassification(5), new Warnings());
+            }
+        };
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<DeltaAnalysisResult> first = executor.submit(new Callable<DeltaAnalysisResult>() {
+                @Override
+                public DeltaAnalysisResult call() throws Exception {
+                    return InFlightDeltaAnalyses.coalesce("same", request);
+                }
+            });
+            assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+
+            final DeltaAnalysisResult[] second = new DeltaAnalysisResult[1];
+            final Thread follower = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        second[0] = InFlightDeltaAnalyses.coalesce("same", request);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            follower.start();
+            awaitWaiting(follower);
+            releaseRequest.countDown();
+            follower.join(10000);
+            assertFalse("The follower is still waiting for the shared request", follower.isAlive());
+
+            assertSame(first.get(10, TimeUnit.SECONDS), second[0]);
+            assertEquals(1, requests.get());
+            assertEquals(0, InFlightDeltaAnalyses.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void followersAskAgainWhenTheLeaderIsAborted() throws Exception {
+        followersAskAgainWhenTheLeaderFailsWith(new LeaderFailure() {
+            @Override
+            public IOException fail() {
+                Thread.currentThread().interrupt();
+                return new InterruptedIOException("Aborted");
+            }
+        });
+    }
+
+    @Test
+    public void followersAskAgainWhenTheLeaderRunsOutOfTime() throws Exception {
+        followersAskAgainWhenTheLeaderFailsWith(new LeaderFailure() {
+            @Override
+            public IOException fail() {
+                return new OutOfTimeException("Out of time", 0);
+            }
+        });
+    }
+
+    @Test
+    public void followersAskAgainWhenTheLeaderIsStopped() throws Exception {
+        followersAskAgainWhenTheLeaderFailsWith(new LeaderFailure() {
+            @Override
+            public IOException fail() {
+                return new AnalysisStoppedException("Stopped");
+            }
+        });
+    }
+
+    @Test
+    public void followersShareTheFailuresOfTheRequest() throws Exception {
+        final List<Object> outcomes = coalesceBehindLeader(new LeaderFailure() {
+            @Override
+            public IOException fail() {
+                return new DeltaAnalysisException("Bad request", 400, false, 0);
+            }
+        });
+
+        assertTrue(outcomes.get(0) instanceof DeltaAnalysisException);
+        assertSame(outcomes.get(0), outcomes.get(1));
+        assertEquals(1, outcomes.get(2));
+    }
+
+    private void followersAskAgainWhenTheLeaderFailsWith(LeaderFailure failure) throws Exception {
+        final List<Object> outcomes = coalesceBehindLeader(failure);
+
+        assertTrue(outcomes.get(0) instanceof IOException);
+        assertTrue(outcomes.get(1) instanceof DeltaAnalysisResult);
+        assertEquals(2, outcomes.get(2));
+        assertEquals(0, InFlightDeltaAnalyses.size());
+    }
+
+    private interface LeaderFailure {
+        IOException fail();
+    }
+
+    /**
+     * Lets a leader fail while a follower waits for it.
+     *
+     * @return what the leader got, what the follower got, and how many requests were sent
+     */
+    private List<Object> coalesceBehindLeader(final LeaderFailure failure) throws Exception {
+        final CountDownLatch requestStarted = new CountDownLatch(1);
+        final CountDownLatch releaseRequest = new CountDownLatch(1);
+        final AtomicInteger requests = new AtomicInteger();
+
+        final Callable<DeltaAnalysisResult> leading = new Callable<DeltaAnalysisResult>() {
+            @Override
+            public DeltaAnalysisResult call() throws Exception {
+                requests.incrementAndGet();
+                requestStarted.countDown();
+                releaseRequest.await();
+                throw failure.fail();
+            }
+        };
+        final Callable<DeltaAnalysisResult> following = new Callable<DeltaAnalysisResult>() {
+            @Override
+            public DeltaAnalysisResult call() throws Exception {
+                requests.incrementAndGet();
+                return new DeltaAnalysisResult(Commits.from(COMMIT), "/view", new RiskClassification(5), new Warnings());
+            }
+        };
+
+        final Object[] outcomes = new Object[2];
+        final Thread leader = new Thread(outcomeOf("other", leading, outcomes, 0));
+        leader.start();
+        assertTrue(requestStarted.await(10, TimeUnit.SECONDS));
+        final Thread follower = new Thread(outcomeOf("other", following, outcomes, 1));
+        follower.start();
+        awaitWaiting(follower);
+
+        releaseRequest.countDown();
+        leader.join(10000);
+        follower.join(10000);
+        assertFalse(leader.isAlive());
+        assertFalse(follower.isAlive());
+        return Arrays.asList(outcomes[0], outcomes[1], requests.get());
+    }
+
+    private static Runnable outcomeOf(final String identity, final Callable<DeltaAnalysisResult> request,
+                                      final Object[] outcomes, final int index) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outcomes[index] = InFlightDeltaAnalyses.coalesce(identity, request);
+                } catch (IOException e) {
+                    outcomes[index] = e;
+                }
+            }
+        };
+    }
+
+    /**
+     * The follower parks on the in-flight request once it has joined it.
+     */
+    private static void awaitWaiting(Thread follower) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (follower.getState() != Thread.State.WAITING) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("The follower never joined the request in flight");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.jenkinsci.plugins.codescene;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latencies, throughput, heap and thread use of a load test run.
+ * The heap is sampled in the background while the run is going on, so the peak is approximate.
+ */
+final class LoadStatistics {
+    private static final long SAMPLE_INTERVAL_MILLIS = 10;
+
+    private final List<Long> latenciesNanos = Collections.synchronizedList(new ArrayList<Long>());
+    private final AtomicInteger failures = new AtomicInteger();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private long startNanos;
+    private long elapsedNanos;
+    private long heapBeforeBytes;
+    private volatile long peakHeapBytes;
+    private int threadsBefore;
+    private Thread heapSampler;
+
+    void start() {
+        System.gc();
+        heapBeforeBytes = memory.getHeapMemoryUsage().getUsed();
+        peakHeapBytes = heapBeforeBytes;
+        threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        heapSampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "Load test heap sampler");
+        heapSampler.setDaemon(true);
+        heapSampler.start();
+        startNanos = System.nanoTime();
+    }
+
+    void recordSuccess(long latencyNanos) {
+        latenciesNanos.add(latencyNanos);
+    }
+
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    void stop() throws InterruptedException {
+        elapsedNanos = System.nanoTime() - startNanos;
+        heapSampler.interrupt();
+        heapSampler.join();
+    }
+
+    int successes() {
+        return latenciesNanos.size();
+    }
+
+    int failures() {
+        return failures.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     */
+    double percentileMillis(double percentile) {
+        final List<Long> sorted;
+        synchronized (latenciesNanos) {
+            sorted = new ArrayList<>(latenciesNanos);
+        }
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(sorted);
+        final int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1e6;
+    }
+
+    double throughputPerSecond() {
+        return successes() / (elapsedNanos / 1e9);
+    }
+
+    String report(String title) {
+        return String.format("%s%n" +
+                        "  operations: %d succeeded, %d failed in %d ms%n" +
+                        "  latency:    p50 %.1f ms, p99 %.1f ms, max %.1f ms%n" +
+                        "  throughput: %.1f operations/s%n" +
+                        "  heap:       %d MB before, %d MB peak%n" +
+                        "  threads:    %d before, %d peak%n",
+                title,
+                successes(), failures(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                percentileMillis(50), percentileMillis(99), percentileMillis(100),
+                throughputPerSecond(),
+                heapBeforeBytes >> 20, peakHeapBytes >> 20,
+                threadsBefore, threads.getPeakThreadCount());
+    }
+}
@@ -0,0 +1,35 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PollScheduleTest {
+
+    @Test
+    public void pollsLessOftenTheLongerTheAnalysisTakes() {
+        final PollSchedule schedule = new PollSchedule();
+
+        assertEquals(500, schedule.nextDelay(0));
+        assertEquals(750, schedule.nextDelay(0));
+        assertEquals(1125, schedule.nextDelay(0));
+    }
+
+    @Test
+    public void neverWaitsLongerThanTheMaximum() {
+        final PollSchedule schedule = new PollSchedule();
+        for (int i = 0; i < 20; i++) {
+            schedule.nextDelay(0);
+        }
+
+        assertEquals(PollSchedule.MAX_MILLIS, schedule.nextDelay(0));
+    }
+
+    @Test
+    public void comesBackWhenTheServerSays() {
+        final PollSchedule schedule = new PollSchedule();
+
+        assertEquals(20000, schedule.nextDelay(20000));
+        assertEquals(750, schedule.nextDelay(0));
+    }
+}
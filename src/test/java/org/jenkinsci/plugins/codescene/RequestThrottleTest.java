@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestThrottleTest {
+
+    private static class ManualClockThrottle extends RequestThrottle {
+        long now = 1500000000000L;
+
+        ManualClockThrottle(int maxConcurrent, int requestsPerMinute) {
+            super("https://codescene.example.com/projects/2/delta-analysis", maxConcurrent, requestsPerMinute);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void letsNoMoreThanTheMaximumRequestsInFlight() throws Exception {
+        final RequestThrottle throttle = new RequestThrottle("https://codescene.example.com", 2, 0);
+
+        assertTrue(throttle.acquire("a", 0));
+        assertTrue(throttle.acquire("b", 0));
+        assertFalse(throttle.acquire("c", 10));
+
+        throttle.release();
+        assertTrue(throttle.acquire("c", 0));
+        assertEquals(2, throttle.getInFlight());
+        assertEquals(0, throttle.getQueued());
+    }
+
+    @Test
+    public void startsNoMoreRequestsThanTheRateAllows() throws Exception {
+        final ManualClockThrottle throttle = new ManualClockThrottle(0, 60);
+
+        // a burst of a tenth of the rate, then one per second
+        for (int i = 0; i < 6; i++) {
+            assertTrue(throttle.acquire("a", 0));
+        }
+        assertFalse(throttle.acquire("a", 0));
+
+        throttle.now += TimeUnit.SECONDS.toMillis(1);
+        assertTrue(throttle.acquire("a", 0));
+        assertFalse(throttle.acquire("a", 0));
+    }
+
+    @Test
+    public void letsTheJobsTakeTurns() throws Exception {
+        final RequestThrottle throttle = new RequestThrottle("https://codescene.example.com", 1, 0);
+        assertTrue(throttle.acquire("other", 0));
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = new ArrayList<>();
+        // the big build queues up first, the small one after it
+        for (String job : new String[]{"big", "big", "big", "small"}) {
+            final Thread thread = new Thread(new Request(throttle, job, order));
+            thread.start();
+            threads.add(thread);
+            awaitQueued(throttle, threads.size());
+        }
+
+        throttle.release();
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse("A request is still waiting for the throttle", thread.isAlive());
+        }
+
+        assertEquals(Arrays.asList("big", "small", "big", "big"), order);
+        assertEquals(5, throttle.getAdmitted());
+    }
+
+    @Test
+    public void aRequestGivingUpMakesWayForTheNext() throws Exception {
+        final RequestThrottle throttle = new RequestThrottle("https://codescene.example.com", 1, 0);
+        assertTrue(throttle.acquire("a", 0));
+
+        assertFalse(throttle.acquire("b", 10));
+
+        assertEquals(0, throttle.getQueued());
+        assertTrue(throttle.getQueuedByJob().isEmpty());
+    }
+
+    private static void awaitQueued(RequestThrottle throttle, int requests) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (throttle.getQueued() < requests) {
+            if (System.nanoTime() - deadline > 0) {
+                fail("Expected " + requests + " requests queued, but there are " + throttle.getQueued());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static final class Request implements Runnable {
+        private final RequestThrottle throttle;
+        private final String job;
+        private final List<String> order;
+
+        Request(RequestThrottle throttle, String job, List<String> order) {
+            this.throttle = throttle;
+            this.job = job;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (throttle.acquire(job, TimeUnit.SECONDS.toMillis(10))) {
+                    order.add(job);
+                    throttle.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.codescene;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class RiskTrendIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private RiskTrendIndex index;
+
+    @Before
+    public void createIndex() {
+        file = new File(folder.getRoot(), RiskTrendIndex.FILE_NAME);
+        index = new RiskTrendIndex(file);
+    }
+
+    private static RiskTrendIndex.BuildRisk build(int number, int maxRisk, int thresholdHits, String category, int count) {
+        final Map<String, Integer> warnings = new TreeMap<>();
+        warnings.put(category, count);
+        return new RiskTrendIndex.BuildRisk(number, 1500000000000L + number, maxRisk, thresholdHits, warnings);
+    }
+
+    @Test
+    public void readsWhatWasAppended() throws Exception {
+        index.append(build(1, 3, 0, "Modifies Hotspot", 1));
+        index.append(build(2, 9, 2, "Lowered Code Health & Cohesion", 4));
+
+        final List<RiskTrendIndex.BuildRisk> builds = new RiskTrendIndex(file).builds();
+
+        assertEquals(2, builds.size());
+        final RiskTrendIndex.BuildRisk second = builds.get(1);
+        assertEquals(2, second.getNumber());
+        assertEquals(1500000000002L, second.getTimestamp());
+        assertEquals(9, second.getMaxRisk());
+        assertEquals(2, second.getThresholdHits());
+        assertEquals(Collections.singletonMap("Lowered Code Health & Cohesion", 4), second.getWarnings());
+    }
+
+    @Test
+    public void onlyParsesTheLinesAddedSinceTheLastRead() throws Exception {
+        index.append(build(1, 3, 0, "Modifies Hotspot", 1));
+        final List<RiskTrendIndex.BuildRisk> before = index.builds();
+
+        index.append(build(2, 5, 0, "Modifies Hotspot", 2));
+        final List<RiskTrendIndex.BuildRisk> after = index.builds();
+
+        assertEquals(1, before.size());
+        assertEquals(2, after.size());
+        assertSame(before.get(0), after.get(0));
+    }
+
+    @Test
+    public void leavesAnUnfinishedLineForTheNextRead() throws Exception {
+        index.append(build(1, 3, 0, "Modifies Hotspot", 1));
+        final String next = build(2, 5, 0, "Modifies Hotspot", 2).toLine();
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(next.substring(0, 6).getBytes(StandardCharsets.UTF_8));
+            assertEquals(1, index.builds().size());
+            out.write(next.substring(6).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertEquals(5, index.builds().get(1).getMaxRisk());
+    }
+
+    @Test
+    public void combinesTheAnalysesOfOneBuild() throws Exception {
+        index.append(build(7, 3, 1, "Modifies Hotspot", 1));
+        index.append(build(7, 6, 1, "Modifies Hotspot", 2));
+
+        final List<RiskTrendIndex.BuildRisk> builds = index.builds();
+
+        assertEquals(1, builds.size());
+        assertEquals(6, builds.get(0).getMaxRisk());
+        assertEquals(2, builds.get(0).getThresholdHits());
+        assertEquals(Integer.valueOf(3), builds.get(0).getWarnings().get("Modifies Hotspot"));
+    }
+
+    @Test
+    public void skipsMalformedLines() throws Exception {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("not a build\n".getBytes(StandardCharsets.UTF_8));
+        }
+        index.append(build(3, 4, 0, "Modifies Hotspot", 1));
+
+        final List<RiskTrendIndex.BuildRisk> builds = index.builds();
+
+        assertEquals(1, builds.size());
+        assertEquals(3, builds.get(0).getNumber());
+    }
+}
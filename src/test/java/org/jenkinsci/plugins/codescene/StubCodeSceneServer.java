@@ -0,0 +1,247 @@
+package org.jenkinsci.plugins.codescene;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process imitation of the CodeScene delta analysis endpoint, for load tests that have to run offline.
+ * Every request is answered after a fixed latency, either with a failure at the configured error rate, or with an
+ * analysis result carrying the configured number of warnings.
+ * <p>
+ * When told to {@link #runInBackground(int) run the analyses in the background}, the delta analysis is accepted with a
+ * location to poll instead, which answers that it's still running for a number of polls before it has the result.
+ * When told to {@link #gzipResponses() gzip its responses}, it does so for the requests that accept it, and when told
+ * to {@link #goDownAfterSubmit() go down after a submit}, it stops right after it has accepted a delta analysis.
+ */
+final class StubCodeSceneServer implements AutoCloseable {
+    private static final Charset UTF8 = Charset.forName("UTF8");
+    private static final String PATH = "/projects/1/delta-analysis";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final double errorRate;
+    private final byte[] result;
+    private final Random random = new Random(42);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger polls = new AtomicInteger();
+    private final AtomicInteger cancellations = new AtomicInteger();
+    private volatile int pollsUntilDone = -1;
+    private volatile int failingPolls;
+    private volatile boolean gzipResponses;
+    private volatile boolean goDownAfterSubmit;
+    private volatile String lastRequestEncoding;
+    private volatile String lastRequestBody;
+
+    /**
+     * @param errorRate the share of requests, between 0 and 1, that are answered with 503 Service Unavailable
+     * @param warnings how many warning categories each result has, which determines the size of the responses
+     */
+    StubCodeSceneServer(long latencyMillis, double errorRate, int warnings) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.result = resultWith(warnings);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 200);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                respond(exchange);
+            }
+        });
+        server.start();
+    }
+
+    URL deltaAnalysisUrl() throws IOException {
+        return new URL("http", "127.0.0.1", server.getAddress().getPort(), PATH);
+    }
+
+    /**
+     * @param pollsUntilDone how many polls are answered with 202 Accepted before the result is there
+     */
+    StubCodeSceneServer runInBackground(int pollsUntilDone) {
+        this.pollsUntilDone = pollsUntilDone;
+        return this;
+    }
+
+    /**
+     * @param failingPolls how many of the first polls are answered with 503 Service Unavailable
+     */
+    StubCodeSceneServer failPolls(int failingPolls) {
+        this.failingPolls = failingPolls;
+        return this;
+    }
+
+    StubCodeSceneServer goDownAfterSubmit() {
+        this.goDownAfterSubmit = true;
+        return this;
+    }
+
+    StubCodeSceneServer gzipResponses() {
+        this.gzipResponses = true;
+        return this;
+    }
+
+    /**
+     * @return the delta analyses submitted, polls and cancellations aside
+     */
+    int requests() {
+        return requests.get();
+    }
+
+    int polls() {
+        return polls.get();
+    }
+
+    int cancellations() {
+        return cancellations.get();
+    }
+
+    /**
+     * @return the Content-Encoding of the last delta analysis submitted, or null if it had none
+     */
+    String lastRequestEncoding() {
+        return lastRequestEncoding;
+    }
+
+    /**
+     * @return the last delta analysis submitted, decompressed
+     */
+    String lastRequestBody() {
+        return lastRequestBody;
+    }
+
+    int failures() {
+        return failures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        if ("DELETE".equals(exchange.getRequestMethod())) {
+            cancellations.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        if ("GET".equals(exchange.getRequestMethod())) {
+            poll(exchange);
+            return;
+        }
+
+        requests.incrementAndGet();
+        final String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        try (InputStream body = "gzip".equals(encoding)
+                ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+            final byte[] buffer = new byte[4096];
+            for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+                request.write(buffer, 0, read);
+            }
+        }
+        lastRequestEncoding = encoding;
+        lastRequestBody = new String(request.toByteArray(), UTF8);
+
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final boolean fail;
+        synchronized (random) {
+            fail = random.nextDouble() < errorRate;
+        }
+
+        if (fail) {
+            failures.incrementAndGet();
+            send(exchange, 503, "CodeScene is temporarily overloaded".getBytes(UTF8));
+        } else if (pollsUntilDone >= 0) {
+            // relative to the server, like CodeScene puts it
+            exchange.getResponseHeaders().add("Location", PATH + "/jobs/42");
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+            if (goDownAfterSubmit) {
+                // not from the handler itself, which the server would wait for
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        server.stop(0);
+                    }
+                }).start();
+            }
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            send(exchange, 201, result);
+        }
+    }
+
+    private void poll(HttpExchange exchange) throws IOException {
+        final int poll = polls.incrementAndGet();
+        if (poll <= failingPolls) {
+            send(exchange, 503, "CodeScene is temporarily overloaded".getBytes(UTF8));
+        } else if (poll <= failingPolls + pollsUntilDone) {
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            send(exchange, 200, result);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] response) throws IOException {
+        final String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        final byte[] body;
+        if (gzipResponses && accepted != null && accepted.contains("gzip")) {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(response);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        } else {
+            body = response;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] resultWith(int warnings) {
+        final StringBuilder json = new StringBuilder("{\"version\":\"1\",\"view\":\"/projects/1/delta/42\",\"result\":{\"risk\":4,\"warnings\":[");
+        for (int i = 0; i < warnings; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"category\":\"Modifies Hotspot ").append(i)
+                    .append("\",\"details\":[\"src/main/module_").append(i).append("/core.clj\",\"src/main/module_")
+                    .append(i).append("/api.clj\"]}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(UTF8);
+    }
+}